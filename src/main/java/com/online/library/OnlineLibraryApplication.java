@@ -1,18 +1,20 @@
 package com.online.library;
 
-import com.online.library.model.Book;
-import com.online.library.repository.BookRepository;
+import com.online.library.model.dto.BookDTO;
+import com.online.library.service.BookService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.boot.context.event.ApplicationReadyEvent;
 import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 public class OnlineLibraryApplication {
 
 	@Autowired
-	private BookRepository bookRepository;
+	private BookService bookService;
 
 	public static void main(String[] args) {
 		SpringApplication.run(OnlineLibraryApplication.class, args);
@@ -20,8 +22,8 @@ public class OnlineLibraryApplication {
 
 	@EventListener(ApplicationReadyEvent.class)
 	public void doSomethingAfterStartup() {
-		Book book = new Book().builder().author("Author")
+		BookDTO book = BookDTO.builder().author("Author")
 				.title("title").build();
-		bookRepository.save(book);
+		bookService.create(book);
 	}
 }
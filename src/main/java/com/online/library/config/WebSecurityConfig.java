@@ -2,8 +2,11 @@ package com.online.library.config;
 
 
 import com.online.library.service.UserDetailsServiceImpl;
+import com.online.library.utils.CalibratedBCryptPasswordEncoder;
+import com.online.library.utils.Constants;
 import com.online.library.utils.JWTAuthenticationEntryPoint;
 import com.online.library.utils.JWTRequestFilter;
+import com.online.library.utils.PooledPasswordEncoder;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
@@ -15,8 +18,6 @@ import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.annotation.web.configuration.WebSecurityConfigurerAdapter;
 import org.springframework.security.config.http.SessionCreationPolicy;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 
 @Configuration
@@ -34,6 +35,21 @@ public class WebSecurityConfig extends WebSecurityConfigurerAdapter {
     @Value("${spring.h2.console.path}")
     private String h2ConsolePath;
 
+    @Value("${library.app.passwordHashStrength}")
+    private int passwordHashStrength;
+
+    @Value("${library.app.passwordHashTargetMillis}")
+    private long passwordHashTargetMillis;
+
+    @Value("${library.app.passwordHashThreads}")
+    private int passwordHashThreads;
+
+    @Value("${library.app.passwordHashQueueCapacity}")
+    private int passwordHashQueueCapacity;
+
+    @Value("${library.app.passwordHashTimeout}")
+    private long passwordHashTimeout;
+
     @Autowired
     UserDetailsServiceImpl userDetailsService;
 
@@ -57,8 +73,12 @@ public class WebSecurityConfig extends WebSecurityConfigurerAdapter {
     }
 
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    public PooledPasswordEncoder passwordEncoder() {
+        int strength = passwordHashTargetMillis > 0
+                ? CalibratedBCryptPasswordEncoder.calibrate(passwordHashTargetMillis)
+                : passwordHashStrength;
+        return new PooledPasswordEncoder(new CalibratedBCryptPasswordEncoder(strength),
+                passwordHashThreads, passwordHashQueueCapacity, passwordHashTimeout);
     }
 
     @Override
@@ -69,6 +89,7 @@ public class WebSecurityConfig extends WebSecurityConfigurerAdapter {
                 .authorizeRequests().antMatchers("/api/auth/**").permitAll()
                 .antMatchers(h2ConsolePath + "/**").permitAll()
                 .antMatchers(SWAGGER_AUTH_WHITELIST).permitAll()
+                .antMatchers("/api/stats/**").hasRole(Constants.ADMIN_ROLE)
                 .anyRequest().authenticated();
 
         http.headers().frameOptions().sameOrigin();
@@ -1,19 +1,26 @@
 package com.online.library.controller;
 
-import com.online.library.exception.RecordNotFoundException;
+import com.online.library.exception.DuplicateRecordException;
+import com.online.library.exception.ServiceUnavailableException;
 import com.online.library.model.Customer;
 import com.online.library.model.dto.LoginRequestDTO;
 import com.online.library.model.dto.MessageResponseDTO;
 import com.online.library.model.dto.RegisterRequestDTO;
 import com.online.library.repository.CustomerRepository;
+import com.online.library.service.CustomerService;
+import com.online.library.service.EmailRegistry;
+import com.online.library.service.TokenRevocationService;
 import com.online.library.utils.JWTUtils;
 import com.online.library.utils.Constants;
+import io.jsonwebtoken.Claims;
 import io.swagger.annotations.Api;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseCookie;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.InternalAuthenticationServiceException;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
@@ -24,6 +31,7 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
+import javax.servlet.http.HttpServletRequest;
 import javax.validation.Valid;
 
 @Api(value = "Auth Rest Controller")
@@ -43,11 +51,29 @@ public class AuthController {
     @Autowired
     JWTUtils jwtUtils;
 
+    @Autowired
+    TokenRevocationService tokenRevocationService;
+
+    @Autowired
+    EmailRegistry emailRegistry;
+
+    /**
+     * Signs the customer in. A password check rejected by the busy hashing pool reaches here
+     * wrapped by the authentication provider and is unwrapped so the client gets a 503.
+     */
     @PostMapping("/login")
     public ResponseEntity<?> authenticate(@Valid @RequestBody LoginRequestDTO loginRequestDTO) {
 
-        Authentication authentication = authenticationManager
-                .authenticate(new UsernamePasswordAuthenticationToken(loginRequestDTO.getUsername(), loginRequestDTO.getPassword()));
+        Authentication authentication;
+        try {
+            authentication = authenticationManager
+                    .authenticate(new UsernamePasswordAuthenticationToken(loginRequestDTO.getUsername(), loginRequestDTO.getPassword()));
+        } catch (InternalAuthenticationServiceException e) {
+            if (e.getCause() instanceof ServiceUnavailableException) {
+                throw (ServiceUnavailableException) e.getCause();
+            }
+            throw e;
+        }
 
         SecurityContextHolder.getContext().setAuthentication(authentication);
 
@@ -61,21 +87,36 @@ public class AuthController {
 
     @PostMapping("/register")
     public ResponseEntity<?> register(@Valid @RequestBody RegisterRequestDTO registerRequestDTO) {
-        if (customerRepository.existsByEmail(registerRequestDTO.getEmail())) {
-            throw new RecordNotFoundException(Constants.RECORD_NOT_FOUND_EXCEPTION);
+        if (emailRegistry.mightExist(registerRequestDTO.getEmail())
+                && customerRepository.existsByEmail(registerRequestDTO.getEmail())) {
+            throw new DuplicateRecordException(Constants.DUPLICATE_EMAIL_EXCEPTION);
         }
 
         Customer customer = new Customer(registerRequestDTO.getEmail(),
                 registerRequestDTO.getName(),
                 encoder.encode(registerRequestDTO.getPassword()));
 
-        customerRepository.save(customer);
+        try {
+            customerRepository.save(customer);
+        } catch (DataIntegrityViolationException e) {
+            if (CustomerService.isDuplicateEmail(e)) {
+                throw new DuplicateRecordException(Constants.DUPLICATE_EMAIL_EXCEPTION);
+            }
+            throw e;
+        }
+        emailRegistry.add(customer.getEmail());
 
         return ResponseEntity.ok(new MessageResponseDTO("Registration complete!"));
     }
 
     @PostMapping("/logout")
-    public ResponseEntity<?> logout() {
+    public ResponseEntity<?> logout(HttpServletRequest request) {
+        String jwt = jwtUtils.getJwtFromCookies(request);
+        Claims claims = jwt != null ? jwtUtils.getVerifiedClaims(jwt) : null;
+        if (claims != null && claims.getExpiration() != null) {
+            tokenRevocationService.revoke(claims.getId(), claims.getExpiration().toInstant());
+        }
+
         ResponseCookie cookie = jwtUtils.getCleanJwtCookie();
         return ResponseEntity.ok().header(HttpHeaders.SET_COOKIE, cookie.toString())
                 .body(new MessageResponseDTO("Signed out!"));
@@ -1,16 +1,39 @@
 package com.online.library.controller;
 
 import com.online.library.exception.RecordNotFoundException;
+import com.online.library.model.CustomerPrincipal;
+import com.online.library.model.dto.BatchItemResultDTO;
 import com.online.library.model.dto.BookDTO;
+import com.online.library.model.dto.BulkImportResultDTO;
+import com.online.library.service.AvailabilityBroadcaster;
 import com.online.library.service.BookService;
+import com.online.library.service.IdempotencyStore;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
 import java.util.List;
+import java.util.function.Supplier;
 
+import static com.online.library.utils.Constants.CATALOG_ETAG_PREFIX;
+import static com.online.library.utils.Constants.DEFAULT_PAGE_SIZE;
+import static com.online.library.utils.Constants.IDEMPOTENCY_KEY_HEADER;
+import static com.online.library.utils.Constants.MAX_AVAILABILITY_SUBSCRIPTION_SIZE;
+import static com.online.library.utils.Constants.IDEMPOTENT_REPLAYED_HEADER;
+import static com.online.library.utils.Constants.MAX_IDEMPOTENCY_KEY_LENGTH;
+import static com.online.library.utils.Constants.MAX_LOAN_BATCH_SIZE;
+import static com.online.library.utils.Constants.MAX_PAGE_SIZE;
+import static com.online.library.utils.Constants.NDJSON_VALUE;
+import static com.online.library.utils.Constants.NEXT_CURSOR_HEADER;
 import static com.online.library.utils.Constants.RECORD_NOT_FOUND_EXCEPTION;
 
 @RestController
@@ -21,13 +44,23 @@ public class BookController {
     @Autowired
     private BookService bookService;
 
+    @Autowired
+    private IdempotencyStore idempotencyStore;
+
+    @Autowired
+    private AvailabilityBroadcaster availabilityBroadcaster;
+
     @GetMapping("/{bookId}")
-    public ResponseEntity<BookDTO> get(@PathVariable("bookId") Long bookId){
+    public ResponseEntity<BookDTO> get(@PathVariable("bookId") Long bookId, WebRequest webRequest){
 
         log.info("Get bookDTO with id {}", bookId);
 
         BookDTO bookDTO = bookService.get(bookId);
         if(bookDTO != null) {
+            if (webRequest.checkNotModified(bookDTO.getVersion() + "-" + bookDTO.getNumberOfCopies())) {
+                log.info("BookDTO with id {} not modified", bookId);
+                return null;
+            }
             log.info("BookDTO details retrieved successful for bookDTO id {}", bookId);
             return ResponseEntity.status(HttpStatus.OK).body(bookDTO);
         } else {
@@ -37,31 +70,87 @@ public class BookController {
     }
 
     @GetMapping(path = "")
-    public ResponseEntity<List<BookDTO>> getBooks() {
-        log.info("Get books list!");
+    public ResponseEntity<List<BookDTO>> getBooks(@RequestParam(value = "afterId", defaultValue = "0") Long afterId,
+                                                  @RequestParam(value = "limit", defaultValue = "" + DEFAULT_PAGE_SIZE) int limit,
+                                                  WebRequest webRequest) {
+        log.info("Get books list after id {}!", afterId);
+
+        if (webRequest.checkNotModified(CATALOG_ETAG_PREFIX + bookService.getCatalogVersion())) {
+            log.info("Books list not modified");
+            return null;
+        }
 
         List<BookDTO> books;
-        books = bookService.getBooks();
+        books = bookService.getBooks(afterId, limit);
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.status(HttpStatus.OK);
+        if (!books.isEmpty() && books.size() >= Math.min(limit, MAX_PAGE_SIZE)) {
+            response.header(NEXT_CURSOR_HEADER, books.get(books.size() - 1).getId().toString());
+        }
+        return response.body(books);
+    }
+
+    @GetMapping(path = "/search")
+    public ResponseEntity<List<BookDTO>> search(@RequestParam("q") String query,
+                                                @RequestParam(value = "limit", defaultValue = "" + DEFAULT_PAGE_SIZE) int limit) {
+        log.info("Search books for {}!", query);
+
+        List<BookDTO> books = bookService.search(query, limit);
 
         return ResponseEntity.status(HttpStatus.OK).body(books);
     }
 
+    @GetMapping(path = "/suggest")
+    public ResponseEntity<List<String>> suggest(@RequestParam("prefix") String prefix,
+                                                @RequestParam(value = "limit", defaultValue = "10") int limit) {
+        log.info("Suggest completions for {}!", prefix);
+
+        List<String> suggestions = bookService.suggest(prefix, limit);
+
+        return ResponseEntity.status(HttpStatus.OK).body(suggestions);
+    }
+
+    @GetMapping(path = "/availability/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> availabilityStream(@RequestParam("ids") List<Long> bookIds) {
+        log.info("Subscribe to availability of {} books!", bookIds.size());
+
+        if (bookIds.isEmpty() || bookIds.size() > MAX_AVAILABILITY_SUBSCRIPTION_SIZE) {
+            log.info("Availability subscription of {} books rejected!", bookIds.size());
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
+        }
+        return ResponseEntity.status(HttpStatus.OK).body(availabilityBroadcaster.subscribe(bookIds));
+    }
+
+    @GetMapping(path = "/export", produces = NDJSON_VALUE)
+    public void export(HttpServletResponse response) throws IOException {
+        log.info("Export books catalog!");
+
+        response.setContentType(NDJSON_VALUE);
+        long exported = bookService.exportBooks(response.getOutputStream());
+
+        log.info("Exported {} books", exported);
+    }
+
     @PostMapping("")
     public ResponseEntity<BookDTO> create(@RequestBody BookDTO bookDTO){
         log.info("Create a new bookDTO with title {} written by {}", bookDTO.getTitle(), bookDTO.getAuthor());
 
-        BookDTO existingBook = bookService.findDuplicate(bookDTO);
-        if(existingBook != null){
-            log.info("The bookDTO {} already exists in our database!", bookDTO.getTitle());
-            return ResponseEntity.status(HttpStatus.OK).body(bookService.addBookCopy(existingBook));
-        }
-
-        BookDTO addedBook = bookService.create(bookDTO);
-        log.info("BookDTO with title {} was added successfully", bookDTO.getTitle());
+        BookDTO addedBook = bookService.createOrAddCopy(bookDTO);
+        log.info("BookDTO with title {} was added successfully, {} copies available", bookDTO.getTitle(), addedBook.getNumberOfCopies());
 
         return ResponseEntity.status(HttpStatus.OK).body(addedBook);
     }
 
+    @PostMapping(path = "/bulk", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<BulkImportResultDTO> bulkImport(HttpServletRequest request) throws IOException {
+        log.info("Bulk import of books started!");
+
+        BulkImportResultDTO result = bookService.importBooks(request.getInputStream());
+        log.info("Bulk import finished, {} inserted and {} merged", result.getInserted(), result.getMerged());
+
+        return ResponseEntity.status(HttpStatus.OK).body(result);
+    }
+
     @PutMapping("/{bookId}")
     public ResponseEntity<BookDTO> update(@RequestBody BookDTO bookDTO, @PathVariable("bookId") Long bookId) {
         log.info("BookDTO with id {} is being updated", bookId);
@@ -78,38 +167,73 @@ public class BookController {
         }
     }
 
-    @GetMapping("/loan/{bookId}")
-    public ResponseEntity<BookDTO> loanBook(@PathVariable("bookId") Long bookId) {
-        log.info("BookDTO with id {} is being loaned by a customer", bookId);
+    @RequestMapping(path = "/loan/{bookId}", method = {RequestMethod.GET, RequestMethod.POST})
+    public ResponseEntity<BookDTO> loanBook(@PathVariable("bookId") Long bookId,
+                                            @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey,
+                                            @AuthenticationPrincipal CustomerPrincipal principal) {
+        log.info("BookDTO with id {} is being loaned by customer {}", bookId, principal.getCustomerId());
 
-        BookDTO updatedBook = bookService.loanBook(bookId);
+        ResponseEntity<BookDTO> response = idempotent(principal.getCustomerId(), idempotencyKey, "loan:" + bookId,
+                () -> bookService.loanBook(bookId, principal.getCustomerId()));
 
-        if(updatedBook == null){
+        if(response.getStatusCode() != HttpStatus.OK){
+            return response;
+        } else if(response.getBody() == null){
             log.info("BookDTO with id {} was not found!", bookId);
             return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
         } else {
-            log.info("BookDTO with id {} loaned successfully!", updatedBook.getId());
-            return ResponseEntity.status(HttpStatus.OK).body(updatedBook);
+            log.info("BookDTO with id {} loaned successfully!", bookId);
+            return response;
         }
     }
 
+    @PostMapping("/loan/batch")
+    public ResponseEntity<List<BatchItemResultDTO>> loanBooks(@RequestBody List<Long> bookIds,
+                                                              @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey,
+                                                              @AuthenticationPrincipal CustomerPrincipal principal) {
+        log.info("{} books are being loaned by customer {}", bookIds.size(), principal.getCustomerId());
 
-    @GetMapping("/return/{bookId}")
-    public ResponseEntity<BookDTO> returnBook(@PathVariable("bookId") Long bookId) {
-        log.info("BookDTO with id {} is being returned by a customer", bookId);
+        if (bookIds.size() > MAX_LOAN_BATCH_SIZE) {
+            log.info("Loan batch of {} books is too large!", bookIds.size());
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
+        }
+        return idempotent(principal.getCustomerId(), idempotencyKey, "loan-batch:" + bookIds,
+                () -> bookService.loanBooks(bookIds, principal.getCustomerId()));
+    }
 
-        BookDTO existingBook = bookService.get(bookId);
-        BookDTO updatedBook = bookService.addBookCopy(existingBook);
+    @RequestMapping(path = "/return/{bookId}", method = {RequestMethod.GET, RequestMethod.POST})
+    public ResponseEntity<BookDTO> returnBook(@PathVariable("bookId") Long bookId,
+                                              @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey,
+                                              @AuthenticationPrincipal CustomerPrincipal principal) {
+        log.info("BookDTO with id {} is being returned by customer {}", bookId, principal.getCustomerId());
 
-        if(updatedBook == null){
+        ResponseEntity<BookDTO> response = idempotent(principal.getCustomerId(), idempotencyKey, "return:" + bookId,
+                () -> bookService.returnBook(bookId, principal.getCustomerId()));
+
+        if(response.getStatusCode() != HttpStatus.OK){
+            return response;
+        } else if(response.getBody() == null){
             log.info("BookDTO with id {} was not found!", bookId);
             return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
         } else {
-            log.info("BookDTO with id {} returned successfully!", updatedBook.getId());
-            return ResponseEntity.status(HttpStatus.OK).body(updatedBook);
+            log.info("BookDTO with id {} returned successfully!", bookId);
+            return response;
         }
     }
 
+    @PostMapping("/return/batch")
+    public ResponseEntity<List<BatchItemResultDTO>> returnBooks(@RequestBody List<Long> bookIds,
+                                                                @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey,
+                                                                @AuthenticationPrincipal CustomerPrincipal principal) {
+        log.info("{} books are being returned by customer {}", bookIds.size(), principal.getCustomerId());
+
+        if (bookIds.size() > MAX_LOAN_BATCH_SIZE) {
+            log.info("Return batch of {} books is too large!", bookIds.size());
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
+        }
+        return idempotent(principal.getCustomerId(), idempotencyKey, "return-batch:" + bookIds,
+                () -> bookService.returnBooks(bookIds, principal.getCustomerId()));
+    }
 
     @DeleteMapping("/{bookId}")
     public ResponseEntity<Void> delete(@PathVariable("bookId") Long bookId) {
@@ -122,6 +246,24 @@ public class BookController {
         return ResponseEntity.status(HttpStatus.OK).build();
     }
 
-
-
+    /**
+     * Runs the mutation, or replays its first result when the client sent an idempotency key
+     * that was already used.
+     */
+    private <T> ResponseEntity<T> idempotent(Long customerId, String idempotencyKey, String request, Supplier<T> mutation) {
+        if (idempotencyKey == null || idempotencyKey.isEmpty()) {
+            return ResponseEntity.status(HttpStatus.OK).body(mutation.get());
+        }
+        if (idempotencyKey.length() > MAX_IDEMPOTENCY_KEY_LENGTH) {
+            log.info("Idempotency key of {} characters is too long!", idempotencyKey.length());
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
+        }
+        IdempotencyStore.Outcome<T> outcome = idempotencyStore.execute(customerId, idempotencyKey, request, mutation);
+        if (outcome.isReplayed()) {
+            log.info("Replayed {} for idempotency key {}", request, idempotencyKey);
+        }
+        return ResponseEntity.status(HttpStatus.OK)
+                .header(IDEMPOTENT_REPLAYED_HEADER, String.valueOf(outcome.isReplayed()))
+                .body(outcome.getResult());
+    }
 }
@@ -9,6 +9,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import java.util.List;
 
@@ -21,12 +22,16 @@ public class CustomerController {
     private CustomerService customerService;
 
     @GetMapping("/{customerId}")
-    public ResponseEntity<CustomerDTO> get(@PathVariable("customerId") Long customerId){
+    public ResponseEntity<CustomerDTO> get(@PathVariable("customerId") Long customerId, WebRequest webRequest){
 
         log.info("Get customerDTO with id {}", customerId);
 
         CustomerDTO customerDTO = customerService.get(customerId);
         if(customerDTO != null) {
+            if (webRequest.checkNotModified(String.valueOf(customerDTO.getVersion()))) {
+                log.info("CustomerDTO with id {} not modified", customerId);
+                return null;
+            }
             log.info("CustomerDTO details retrieved successful for customerDTO id {}", customerId);
             return ResponseEntity.status(HttpStatus.OK).body(customerDTO);
         } else {
@@ -36,13 +41,18 @@ public class CustomerController {
     }
 
     @GetMapping(path = "")
-    public ResponseEntity<List<CustomerDTO>> getCustomers() {
-        log.info("Get customers list!");
+    public ResponseEntity<List<CustomerDTO>> getCustomers(@RequestParam(value = "afterId", defaultValue = "0") Long afterId,
+                                                          @RequestParam(value = "limit", defaultValue = "" + Constants.DEFAULT_PAGE_SIZE) int limit) {
+        log.info("Get customers list after id {}!", afterId);
 
         List<CustomerDTO> customers;
-        customers = customerService.getCustomers();
+        customers = customerService.getCustomers(afterId, limit);
 
-        return ResponseEntity.status(HttpStatus.OK).body(customers);
+        ResponseEntity.BodyBuilder response = ResponseEntity.status(HttpStatus.OK);
+        if (!customers.isEmpty() && customers.size() >= Math.min(limit, Constants.MAX_PAGE_SIZE)) {
+            response.header(Constants.NEXT_CURSOR_HEADER, customers.get(customers.size() - 1).getId().toString());
+        }
+        return response.body(customers);
     }
 
     @PutMapping("/{customerId}")
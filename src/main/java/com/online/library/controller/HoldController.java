@@ -0,0 +1,50 @@
+package com.online.library.controller;
+
+import com.online.library.model.CustomerPrincipal;
+import com.online.library.model.dto.HoldDTO;
+import com.online.library.service.HoldService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@Slf4j
+@RequestMapping("/api/hold")
+public class HoldController {
+
+    @Autowired
+    private HoldService holdService;
+
+    @PostMapping("/book/{bookId}")
+    public ResponseEntity<HoldDTO> placeHold(@PathVariable("bookId") Long bookId,
+                                             @AuthenticationPrincipal CustomerPrincipal principal) {
+        log.info("Customer {} places a hold on book with id {}", principal.getCustomerId(), bookId);
+
+        HoldDTO hold = holdService.placeHold(bookId, principal.getCustomerId());
+        log.info("Hold {} placed at position {}", hold.getId(), hold.getPosition());
+
+        return ResponseEntity.status(HttpStatus.CREATED).body(hold);
+    }
+
+    @GetMapping("/{holdId}")
+    public ResponseEntity<HoldDTO> get(@PathVariable("holdId") Long holdId,
+                                       @AuthenticationPrincipal CustomerPrincipal principal) {
+        log.info("Get hold with id {}", holdId);
+
+        HoldDTO hold = holdService.getHold(holdId, principal.getCustomerId());
+
+        return ResponseEntity.status(HttpStatus.OK).body(hold);
+    }
+
+    @DeleteMapping("/{holdId}")
+    public ResponseEntity<Void> cancel(@PathVariable("holdId") Long holdId,
+                                       @AuthenticationPrincipal CustomerPrincipal principal) {
+        log.info("Cancel hold with id {}", holdId);
+
+        holdService.cancelHold(holdId, principal.getCustomerId());
+        return ResponseEntity.status(HttpStatus.OK).build();
+    }
+}
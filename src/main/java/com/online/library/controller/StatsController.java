@@ -0,0 +1,35 @@
+package com.online.library.controller;
+
+import com.online.library.utils.StatsProvider;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+@RestController
+@Slf4j
+@RequestMapping("/api/stats")
+public class StatsController {
+
+    @Autowired
+    private List<StatsProvider> statsProviders;
+
+    @GetMapping(path = "")
+    public ResponseEntity<Map<String, Map<String, Object>>> getStats() {
+        log.info("Get internal stats!");
+
+        Map<String, Map<String, Object>> stats = new TreeMap<>();
+        for (StatsProvider statsProvider : statsProviders) {
+            stats.put(statsProvider.getStatsName(), statsProvider.getStats());
+        }
+
+        return ResponseEntity.status(HttpStatus.OK).body(stats);
+    }
+}
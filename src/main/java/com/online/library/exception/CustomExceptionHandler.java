@@ -32,4 +32,44 @@ public class CustomExceptionHandler extends ResponseEntityExceptionHandler {
         return new ResponseEntity(error, HttpStatus.NOT_FOUND);
     }
 
+    @ExceptionHandler(DuplicateRecordException.class)
+    public final ResponseEntity<Object> handleDuplicateRecordException(DuplicateRecordException exception, WebRequest request) {
+        List<String> details = new ArrayList<>();
+        details.add(exception.getLocalizedMessage());
+        ErrorResponse error = new ErrorResponse("Record already exists!", details);
+        return new ResponseEntity(error, HttpStatus.CONFLICT);
+    }
+
+    @ExceptionHandler(VersionConflictException.class)
+    public final ResponseEntity<Object> handleVersionConflictException(VersionConflictException exception, WebRequest request) {
+        List<String> details = new ArrayList<>();
+        details.add(exception.getLocalizedMessage());
+        ErrorResponse error = new ErrorResponse("Record was modified!", details);
+        return new ResponseEntity(error, HttpStatus.CONFLICT);
+    }
+
+    @ExceptionHandler(RecordInUseException.class)
+    public final ResponseEntity<Object> handleRecordInUseException(RecordInUseException exception, WebRequest request) {
+        List<String> details = new ArrayList<>();
+        details.add(exception.getLocalizedMessage());
+        ErrorResponse error = new ErrorResponse("Record is in use!", details);
+        return new ResponseEntity(error, HttpStatus.CONFLICT);
+    }
+
+    @ExceptionHandler(BadRequestException.class)
+    public final ResponseEntity<Object> handleBadRequestException(BadRequestException exception, WebRequest request) {
+        List<String> details = new ArrayList<>();
+        details.add(exception.getLocalizedMessage());
+        ErrorResponse error = new ErrorResponse("Bad request!", details);
+        return new ResponseEntity(error, HttpStatus.BAD_REQUEST);
+    }
+
+    @ExceptionHandler(ServiceUnavailableException.class)
+    public final ResponseEntity<Object> handleServiceUnavailableException(ServiceUnavailableException exception, WebRequest request) {
+        List<String> details = new ArrayList<>();
+        details.add(exception.getLocalizedMessage());
+        ErrorResponse error = new ErrorResponse("Service unavailable!", details);
+        return new ResponseEntity(error, HttpStatus.SERVICE_UNAVAILABLE);
+    }
+
 }
\ No newline at end of file
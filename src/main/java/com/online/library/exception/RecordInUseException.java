@@ -0,0 +1,14 @@
+package com.online.library.exception;
+
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.CONFLICT)
+public class RecordInUseException extends RuntimeException {
+
+    public RecordInUseException(String exception){
+        super(exception);
+    }
+
+}
@@ -6,7 +6,10 @@ import javax.persistence.*;
 import java.util.Set;
 
 @Entity
-@Table(name = "books")
+@Table(name = "books",
+        uniqueConstraints = {
+                @UniqueConstraint(name = "uk_books_title_author", columnNames = {"title", "author"})
+        })
 @Getter
 @Setter
 @Builder
@@ -17,7 +20,8 @@ import java.util.Set;
 public class Book {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "book_seq")
+    @SequenceGenerator(name = "book_seq", sequenceName = "book_seq", allocationSize = 50)
     private Long id;
 
     @Column(nullable = false)
@@ -30,6 +34,9 @@ public class Book {
     @Builder.Default
     private Integer numberOfCopies = 1;
 
+    @Version
+    private Long version;
+
     @OneToMany(mappedBy = "book")
     private Set<Loan> loans;
 
@@ -1,5 +1,6 @@
 package com.online.library.model;
 
+import com.online.library.utils.Constants;
 import lombok.*;
 
 import javax.persistence.*;
@@ -8,7 +9,7 @@ import java.util.Set;
 @Entity
 @Table(name = "customers",
         uniqueConstraints = {
-                @UniqueConstraint(columnNames = "email")
+                @UniqueConstraint(name = Constants.CUSTOMER_EMAIL_CONSTRAINT, columnNames = "email")
         })
 @Getter
 @Setter
@@ -23,7 +24,7 @@ public class Customer {
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
-    @Column(nullable = false,unique=true)
+    @Column(nullable = false)
     private String email;
 
     @Column(nullable = false)
@@ -32,6 +33,9 @@ public class Customer {
     @Column(nullable = false)
     private String password;
 
+    @Version
+    private Long version;
+
     @OneToMany(mappedBy = "customer")
     private Set<Loan> loans;
 
@@ -0,0 +1,25 @@
+package com.online.library.model;
+
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.userdetails.User;
+
+import java.util.Collection;
+
+/**
+ * Authenticated customer, carrying the customer ID so requests acting on behalf of the
+ * caller don't have to look it up by email.
+ */
+public class CustomerPrincipal extends User {
+
+    private final Long customerId;
+
+    public CustomerPrincipal(Long customerId, String username, String password,
+                             Collection<? extends GrantedAuthority> authorities) {
+        super(username, password, authorities);
+        this.customerId = customerId;
+    }
+
+    public Long getCustomerId() {
+        return customerId;
+    }
+}
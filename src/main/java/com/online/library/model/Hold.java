@@ -0,0 +1,43 @@
+package com.online.library.model;
+
+import lombok.*;
+
+import javax.persistence.*;
+import java.time.Instant;
+
+@Entity
+@Table(name = "holds",
+        indexes = {
+                @Index(name = "idx_holds_book_status_id", columnList = "book_id, status, id"),
+                @Index(name = "idx_holds_customer_book", columnList = "customer_id, book_id")
+        })
+@Getter
+@Setter
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@ToString(exclude = {"customer", "book"})
+public class Hold {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY, optional = false)
+    @JoinColumn(name = "customer_id", nullable = false)
+    private Customer customer;
+
+    @ManyToOne(fetch = FetchType.LAZY, optional = false)
+    @JoinColumn(name = "book_id", nullable = false)
+    private Book book;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private HoldStatus status;
+
+    @Column(nullable = false)
+    private Instant createdAt;
+
+    private Instant fulfilledAt;
+
+}
@@ -0,0 +1,7 @@
+package com.online.library.model;
+
+public enum HoldStatus {
+    WAITING,
+    FULFILLED,
+    CANCELLED
+}
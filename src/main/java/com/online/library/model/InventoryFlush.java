@@ -0,0 +1,28 @@
+package com.online.library.model;
+
+import lombok.*;
+
+import javax.persistence.*;
+import java.time.Instant;
+
+/**
+ * Marks a journal segment whose copy count changes were applied to the books table, written
+ * in the same transaction as the changes so a segment is never applied twice.
+ */
+@Entity
+@Table(name = "inventory_flushes")
+@Getter
+@Setter
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@ToString
+public class InventoryFlush {
+
+    @Id
+    private Long segmentId;
+
+    @Column(nullable = false)
+    private Instant flushedAt;
+
+}
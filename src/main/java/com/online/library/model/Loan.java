@@ -3,24 +3,41 @@ package com.online.library.model;
 import lombok.*;
 
 import javax.persistence.*;
+import java.time.Instant;
 
 @Entity
+@Table(name = "loans",
+        indexes = {
+                @Index(name = "idx_loans_book_customer", columnList = "book_id, customer_id"),
+                @Index(name = "idx_loans_due_at", columnList = "due_at, id")
+        })
 @Getter
 @Setter
 @Builder
 @AllArgsConstructor
 @NoArgsConstructor
-@ToString
+@ToString(exclude = {"customer", "book"})
 public class Loan {
 
     @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
     Long id;
 
-    @ManyToOne
-    @JoinColumn(name = "customer_id")
+    @ManyToOne(fetch = FetchType.LAZY, optional = false)
+    @JoinColumn(name = "customer_id", nullable = false)
     Customer customer;
 
-    @ManyToOne
-    @JoinColumn(name = "book_id")
+    @ManyToOne(fetch = FetchType.LAZY, optional = false)
+    @JoinColumn(name = "book_id", nullable = false)
     Book book;
+
+    @Column(nullable = false)
+    Instant loanedAt;
+
+    @Column(name = "due_at", nullable = false)
+    Instant dueAt;
+
+    Instant returnedAt;
+
+    Instant overdueNotifiedAt;
 }
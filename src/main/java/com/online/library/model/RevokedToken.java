@@ -0,0 +1,27 @@
+package com.online.library.model;
+
+import lombok.*;
+
+import javax.persistence.*;
+import java.time.Instant;
+
+@Entity
+@Table(name = "revoked_tokens",
+        indexes = {
+                @Index(name = "idx_revoked_tokens_expires_at", columnList = "expiresAt")
+        })
+@Getter
+@Setter
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@ToString
+public class RevokedToken {
+
+    @Id
+    private String tokenId;
+
+    @Column(nullable = false)
+    private Instant expiresAt;
+
+}
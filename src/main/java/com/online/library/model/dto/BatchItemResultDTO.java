@@ -0,0 +1,21 @@
+package com.online.library.model.dto;
+
+import lombok.*;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@EqualsAndHashCode
+@ToString
+public class BatchItemResultDTO {
+
+    private Long bookId;
+
+    private boolean success;
+
+    private Integer numberOfCopies;
+
+    private String error;
+
+}
@@ -0,0 +1,19 @@
+package com.online.library.model.dto;
+
+import lombok.*;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@EqualsAndHashCode
+@ToString
+public class BookAvailabilityDTO {
+
+    private Long bookId;
+
+    private Integer numberOfCopies;
+
+    private Long version;
+
+}
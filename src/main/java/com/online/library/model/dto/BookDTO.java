@@ -25,4 +25,6 @@ public class BookDTO {
     @Builder.Default
     private Integer numberOfCopies = 1;
 
+    private Long version;
+
 }
@@ -0,0 +1,25 @@
+package com.online.library.model.dto;
+
+import lombok.*;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@EqualsAndHashCode
+@ToString
+public class BulkImportResultDTO {
+
+    private long received;
+
+    private long inserted;
+
+    private long merged;
+
+    private long rejected;
+
+    private long elapsedMillis;
+
+    private double rowsPerSecond;
+
+}
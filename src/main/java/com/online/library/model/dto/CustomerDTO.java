@@ -24,4 +24,6 @@ public class CustomerDTO {
     @Size(min = 2, max = 50)
     private String name;
 
+    private Long version;
+
 }
@@ -0,0 +1,31 @@
+package com.online.library.model.dto;
+
+import com.online.library.model.HoldStatus;
+import lombok.*;
+
+import java.time.Instant;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@EqualsAndHashCode
+@ToString
+public class HoldDTO {
+
+    private Long id;
+
+    private Long bookId;
+
+    private HoldStatus status;
+
+    /**
+     * Place in the book's queue, 1 being next in line; only set while waiting.
+     */
+    private Long position;
+
+    private Instant createdAt;
+
+    private Instant fulfilledAt;
+
+}
@@ -0,0 +1,25 @@
+package com.online.library.model.mapper;
+
+import com.online.library.model.Book;
+import com.online.library.model.dto.BookDTO;
+import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
+import org.mapstruct.factory.Mappers;
+
+/**
+ * Book conversions generated at compile time by MapStruct, plain getter and setter calls
+ * with no reflection at runtime.
+ */
+@Mapper
+public interface BookMapper {
+
+    BookMapper INSTANCE = Mappers.getMapper(BookMapper.class);
+
+    BookDTO toBookDTO(Book book);
+
+    @Mapping(target = "loans", ignore = true)
+    @Mapping(target = "version", ignore = true)
+    Book toBook(BookDTO bookDTO);
+
+    BookDTO copy(BookDTO bookDTO);
+}
@@ -1,22 +1,82 @@
 package com.online.library.repository;
 
 import com.online.library.model.Book;
+import com.online.library.model.dto.BookDTO;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import javax.persistence.QueryHint;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface BookRepository  extends JpaRepository<Book, Long> {
-    Optional<Book> findBookByTitleAndAuthor(String title, String author);
+    @Query("SELECT new com.online.library.model.dto.BookDTO(book.id, book.title, book.author, book.numberOfCopies, book.version) "
+            + "FROM Book book WHERE book.id = :id")
+    Optional<BookDTO> findBookDTOById(Long id);
 
+    @Query("SELECT new com.online.library.model.dto.BookDTO(book.id, book.title, book.author, book.numberOfCopies, book.version) "
+            + "FROM Book book WHERE book.id > :afterId ORDER BY book.id")
+    List<BookDTO> findBookDTOsAfter(Long afterId, Pageable pageable);
+
+    @Query("SELECT new com.online.library.model.dto.BookDTO(book.id, book.title, book.author, book.numberOfCopies, book.version) "
+            + "FROM Book book WHERE book.id IN :ids")
+    List<BookDTO> findBookDTOsByIdIn(Collection<Long> ids);
+
+    List<Book> findByTitleIn(Collection<String> titles);
+
+    @QueryHints({
+            @QueryHint(name = "org.hibernate.fetchSize", value = "500"),
+            @QueryHint(name = "org.hibernate.readOnly", value = "true")
+    })
+    @Query("SELECT book FROM Book book ORDER BY book.id")
+    Stream<Book> streamAllOrderedById();
+
+    @Query("SELECT new com.online.library.model.dto.BookDTO(book.id, book.title, book.author, book.numberOfCopies, book.version) "
+            + "FROM Book book WHERE book.title = :title AND book.author = :author")
+    Optional<BookDTO> findBookDTOByTitleAndAuthor(String title, String author);
+
+    /**
+     * Adds copies to the book with the given title and author in a single statement; returns 0
+     * when there is no such book yet.
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE Book book SET book.numberOfCopies = book.numberOfCopies + :copies, book.version = book.version + 1 "
+            + "WHERE book.title = :title AND book.author = :author")
+    int addBookCopies(String title, String author, int copies);
+
+    /**
+     * Renames the book if it is still at the given version; returns 0 when it doesn't exist or
+     * was changed in the meantime.
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE Book book SET book.title = :title, book.author = :author, book.version = book.version + 1 "
+            + "WHERE book.id = :id AND book.version = :version")
+    int updateBookAtVersion(Long id, String title, String author, Long version);
+
+    /**
+     * Takes one copy of the book if any is available; returns 0 when the book doesn't exist or
+     * has no copies left.
+     */
     @Modifying
-    @Query("UPDATE Book book set book.numberOfCopies = book.numberOfCopies + 1 WHERE book.id = :id")
-    void incrementBookCopies(Long id);
+    @Query("UPDATE Book book SET book.numberOfCopies = book.numberOfCopies - 1, book.version = book.version + 1 "
+            + "WHERE book.id = :id AND book.numberOfCopies > 0")
+    int takeBookCopy(Long id);
 
+    /**
+     * Puts one copy of the book back; returns 0 when the book doesn't exist.
+     */
     @Modifying
-    @Query("UPDATE Book book set book.numberOfCopies = book.numberOfCopies - 1 WHERE book.id = :id")
-    void decrementBookCopies(Long id);
+    @Query("UPDATE Book book SET book.numberOfCopies = book.numberOfCopies + 1, book.version = book.version + 1 "
+            + "WHERE book.id = :id")
+    int putBackBookCopy(Long id);
 }
@@ -1,9 +1,15 @@
 package com.online.library.repository;
 
 import com.online.library.model.Customer;
+import com.online.library.model.dto.CustomerDTO;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -11,4 +17,25 @@ public interface CustomerRepository  extends JpaRepository<Customer, Long> {
     Optional<Customer> findByEmail(String username);
 
     Boolean existsByEmail(String email);
+
+    @Query("SELECT new com.online.library.model.dto.CustomerDTO(customer.id, customer.email, customer.name, customer.version) "
+            + "FROM Customer customer WHERE customer.id = :id")
+    Optional<CustomerDTO> findCustomerDTOById(Long id);
+
+    @Query("SELECT new com.online.library.model.dto.CustomerDTO(customer.id, customer.email, customer.name, customer.version) "
+            + "FROM Customer customer WHERE customer.id > :afterId ORDER BY customer.id")
+    List<CustomerDTO> findCustomerDTOsAfter(Long afterId, Pageable pageable);
+
+    @Query("SELECT customer.email FROM Customer customer")
+    List<String> findAllEmails();
+
+    /**
+     * Changes the customer if it is still at the given version; returns 0 when it doesn't exist
+     * or was changed in the meantime.
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE Customer customer SET customer.email = :email, customer.name = :name, "
+            + "customer.version = customer.version + 1 WHERE customer.id = :id AND customer.version = :version")
+    int updateCustomerAtVersion(Long id, String email, String name, Long version);
 }
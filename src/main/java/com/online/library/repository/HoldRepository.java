@@ -0,0 +1,31 @@
+package com.online.library.repository;
+
+import com.online.library.model.Hold;
+import com.online.library.model.HoldStatus;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.Optional;
+
+@Repository
+public interface HoldRepository extends JpaRepository<Hold, Long> {
+
+    boolean existsByBookIdAndCustomerIdAndStatus(Long bookId, Long customerId, HoldStatus status);
+
+    boolean existsByBookIdAndStatus(Long bookId, HoldStatus status);
+
+    Optional<Hold> findFirstByBookIdAndStatusOrderByIdAsc(Long bookId, HoldStatus status);
+
+    long countByBookIdAndStatusAndIdLessThan(Long bookId, HoldStatus status, Long id);
+
+    /**
+     * Moves a waiting hold to the given status; returns 0 when it was no longer waiting.
+     */
+    @Modifying
+    @Query("UPDATE Hold hold SET hold.status = :status, hold.fulfilledAt = :at "
+            + "WHERE hold.id = :id AND hold.status = com.online.library.model.HoldStatus.WAITING")
+    int closeWaitingHold(Long id, HoldStatus status, Instant at);
+}
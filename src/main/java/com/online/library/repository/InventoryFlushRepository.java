@@ -0,0 +1,9 @@
+package com.online.library.repository;
+
+import com.online.library.model.InventoryFlush;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface InventoryFlushRepository extends JpaRepository<InventoryFlush, Long> {
+}
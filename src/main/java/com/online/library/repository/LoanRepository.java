@@ -0,0 +1,43 @@
+package com.online.library.repository;
+
+import com.online.library.model.Loan;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface LoanRepository extends JpaRepository<Loan, Long> {
+    Optional<Loan> findFirstByBookIdAndCustomerIdAndReturnedAtIsNullOrderByIdAsc(Long bookId, Long customerId);
+
+    List<Loan> findByCustomerIdAndBookIdInAndReturnedAtIsNullOrderByIdAsc(Long customerId, Collection<Long> bookIds);
+
+    /**
+     * Open loans not reported overdue yet, due by the given time, walking the due date index
+     * from the (dueAt, id) cursor onwards.
+     */
+    @Query("SELECT loan FROM Loan loan WHERE loan.returnedAt IS NULL AND loan.overdueNotifiedAt IS NULL "
+            + "AND loan.dueAt <= :until "
+            + "AND (loan.dueAt > :afterDueAt OR (loan.dueAt = :afterDueAt AND loan.id > :afterId)) "
+            + "ORDER BY loan.dueAt, loan.id")
+    List<Loan> findDueLoansAfter(Instant afterDueAt, Long afterId, Instant until, Pageable pageable);
+
+    /**
+     * Marks the loans that are still open and not reported yet as overdue at the given time;
+     * returns how many were marked.
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE Loan loan SET loan.overdueNotifiedAt = :at "
+            + "WHERE loan.id IN :ids AND loan.returnedAt IS NULL AND loan.overdueNotifiedAt IS NULL")
+    int markOverdue(Collection<Long> ids, Instant at);
+
+    List<Loan> findByIdInAndOverdueNotifiedAt(Collection<Long> ids, Instant overdueNotifiedAt);
+}
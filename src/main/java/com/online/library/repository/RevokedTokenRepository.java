@@ -0,0 +1,21 @@
+package com.online.library.repository;
+
+import com.online.library.model.RevokedToken;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.List;
+
+@Repository
+public interface RevokedTokenRepository extends JpaRepository<RevokedToken, String> {
+
+    @Query("SELECT token.tokenId FROM RevokedToken token WHERE token.expiresAt > :now")
+    List<String> findActiveTokenIds(Instant now);
+
+    @Modifying
+    @Query("DELETE FROM RevokedToken token WHERE token.expiresAt <= :now")
+    int deleteExpired(Instant now);
+}
@@ -0,0 +1,349 @@
+package com.online.library.service;
+
+import com.online.library.model.dto.BookAvailabilityDTO;
+import com.online.library.model.dto.BookDTO;
+import com.online.library.repository.BookRepository;
+import com.online.library.utils.Constants;
+import com.online.library.utils.StatsProvider;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Pushes the available copies of books to Server-Sent Events subscribers. Changes only mark
+ * a watched book; every coalescing window the marked books are read with one query and fanned
+ * out to their subscribers.
+ *
+ * Each subscriber keeps at most one pending update per book it watches, so a slow client
+ * holds no more than its own subscription in memory, and its sends run on a small bounded
+ * pool. A subscriber whose oldest pending update waited longer than the allowed lag is
+ * disconnected, and the client reconnects to get a fresh snapshot.
+ */
+@Component
+@Slf4j
+public class AvailabilityBroadcaster implements StatsProvider {
+
+    private static final String EVENT_NAME = "availability";
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private InventoryEngine inventoryEngine;
+
+    private final long streamTimeoutMillis;
+
+    private final long maxLagMillis;
+
+    private final ThreadPoolExecutor executor;
+
+    private final Map<Long, Set<Subscriber>> subscriptions = new ConcurrentHashMap<>();
+
+    private final Set<Long> changed = ConcurrentHashMap.newKeySet();
+
+    private final Set<Subscriber> rejected = ConcurrentHashMap.newKeySet();
+
+    private final AtomicInteger subscribers = new AtomicInteger();
+
+    private final LongAdder flushes = new LongAdder();
+
+    private final LongAdder coalesced = new LongAdder();
+
+    private final LongAdder sent = new LongAdder();
+
+    private final LongAdder rejectedSends = new LongAdder();
+
+    private final LongAdder slowDisconnects = new LongAdder();
+
+    public AvailabilityBroadcaster(@Value("${library.app.availabilityStreamTimeout}") long streamTimeoutMillis,
+                                   @Value("${library.app.availabilityMaxLag}") long maxLagMillis,
+                                   @Value("${library.app.availabilitySenderThreads}") int threads,
+                                   @Value("${library.app.availabilitySendQueueCapacity}") int queueCapacity) {
+        this.streamTimeoutMillis = streamTimeoutMillis;
+        this.maxLagMillis = maxLagMillis;
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "availability-stream-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * Opens a stream for the given books, starting with their current availability.
+     */
+    public SseEmitter subscribe(Collection<Long> bookIds) {
+        SseEmitter emitter = new SseEmitter(streamTimeoutMillis);
+        Subscriber subscriber = new Subscriber(emitter, new LinkedHashSet<>(bookIds));
+        emitter.onCompletion(() -> unsubscribe(subscriber));
+        emitter.onTimeout(() -> unsubscribe(subscriber));
+        emitter.onError(error -> unsubscribe(subscriber));
+        for (Long bookId : subscriber.bookIds) {
+            subscriptions.computeIfAbsent(bookId, id -> ConcurrentHashMap.newKeySet()).add(subscriber);
+        }
+        subscribers.incrementAndGet();
+        long now = System.currentTimeMillis();
+        boolean schedule = false;
+        for (BookAvailabilityDTO availability : load(subscriber.bookIds)) {
+            schedule |= subscriber.offer(availability, now);
+        }
+        if (schedule) {
+            schedule(subscriber);
+        }
+        return emitter;
+    }
+
+    /**
+     * Marks the book as changed if anyone watches it. Inside a transaction the mark is set
+     * once the transaction commits, so the flush reads the committed count.
+     */
+    public void publish(Long bookId) {
+        if (bookId == null || !subscriptions.containsKey(bookId)) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    markChanged(bookId);
+                }
+            });
+        } else {
+            markChanged(bookId);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${library.app.availabilityCoalesceWindow}")
+    public void flush() {
+        Set<Subscriber> toSchedule = new HashSet<>();
+        for (Subscriber subscriber : rejected) {
+            rejected.remove(subscriber);
+            toSchedule.add(subscriber);
+        }
+        if (!changed.isEmpty()) {
+            List<Long> bookIds = new ArrayList<>(changed);
+            changed.removeAll(bookIds);
+            flushes.increment();
+            long now = System.currentTimeMillis();
+            for (BookAvailabilityDTO availability : load(bookIds)) {
+                Set<Subscriber> watchers = subscriptions.get(availability.getBookId());
+                if (watchers == null) {
+                    continue;
+                }
+                for (Subscriber subscriber : watchers) {
+                    if (subscriber.lagMillis(now) > maxLagMillis) {
+                        disconnect(subscriber, now);
+                    } else if (subscriber.offer(availability, now)) {
+                        toSchedule.add(subscriber);
+                    }
+                }
+            }
+        }
+        toSchedule.forEach(this::schedule);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void markChanged(Long bookId) {
+        if (!changed.add(bookId)) {
+            coalesced.increment();
+        }
+    }
+
+    private List<BookAvailabilityDTO> load(Collection<Long> bookIds) {
+        List<BookAvailabilityDTO> availabilities = new ArrayList<>(bookIds.size());
+        List<Long> ids = new ArrayList<>(bookIds);
+        for (int from = 0; from < ids.size(); from += Constants.MAX_PAGE_SIZE) {
+            List<Long> page = ids.subList(from, Math.min(ids.size(), from + Constants.MAX_PAGE_SIZE));
+            for (BookDTO bookDTO : bookRepository.findBookDTOsByIdIn(page)) {
+                int copies = inventoryEngine.isEnabled()
+                        ? inventoryEngine.available(bookDTO.getId())
+                        : bookDTO.getNumberOfCopies();
+                availabilities.add(new BookAvailabilityDTO(bookDTO.getId(), copies, bookDTO.getVersion()));
+            }
+        }
+        return availabilities;
+    }
+
+    private void schedule(Subscriber subscriber) {
+        try {
+            executor.execute(() -> send(subscriber));
+        } catch (RejectedExecutionException e) {
+            rejectedSends.increment();
+            rejected.add(subscriber);
+        }
+    }
+
+    private void send(Subscriber subscriber) {
+        List<BookAvailabilityDTO> batch;
+        while ((batch = subscriber.take()) != null) {
+            for (BookAvailabilityDTO availability : batch) {
+                try {
+                    subscriber.emitter.send(SseEmitter.event()
+                            .name(EVENT_NAME)
+                            .id(availability.getBookId() + "-" + availability.getVersion())
+                            .data(availability));
+                    sent.increment();
+                } catch (IOException | IllegalStateException e) {
+                    log.debug("Availability subscriber went away: {}", e.getMessage());
+                    unsubscribe(subscriber);
+                    return;
+                }
+            }
+        }
+        if (subscriber.isClosed()) {
+            subscriber.emitter.complete();
+        }
+    }
+
+    /**
+     * Drops a lagging subscriber. A send still blocked on it completes the stream once it
+     * returns, so the scheduler never waits on a slow client.
+     */
+    private void disconnect(Subscriber subscriber, long now) {
+        slowDisconnects.increment();
+        log.debug("Disconnecting availability subscriber lagging {} ms behind!", subscriber.lagMillis(now));
+        boolean sending = subscriber.isScheduled();
+        unsubscribe(subscriber);
+        if (!sending) {
+            subscriber.emitter.complete();
+        }
+    }
+
+    private void unsubscribe(Subscriber subscriber) {
+        if (!subscriber.close()) {
+            return;
+        }
+        for (Long bookId : subscriber.bookIds) {
+            subscriptions.computeIfPresent(bookId, (id, watchers) -> {
+                watchers.remove(subscriber);
+                return watchers.isEmpty() ? null : watchers;
+            });
+        }
+        rejected.remove(subscriber);
+        subscribers.decrementAndGet();
+    }
+
+    @Override
+    public String getStatsName() {
+        return "availabilityBroadcaster";
+    }
+
+    @Override
+    public Map<String, Object> getStats() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("subscribers", subscribers.get());
+        result.put("watchedBooks", subscriptions.size());
+        result.put("flushes", flushes.sum());
+        result.put("coalesced", coalesced.sum());
+        result.put("sent", sent.sum());
+        result.put("rejectedSends", rejectedSends.sum());
+        result.put("slowDisconnects", slowDisconnects.sum());
+        result.put("sendQueue", executor.getQueue().size());
+        return result;
+    }
+
+    private static final class Subscriber {
+
+        private final SseEmitter emitter;
+
+        private final Set<Long> bookIds;
+
+        private final Map<Long, BookAvailabilityDTO> pending = new LinkedHashMap<>();
+
+        private boolean scheduled;
+
+        private boolean closed;
+
+        private long oldestPendingAt;
+
+        private Subscriber(SseEmitter emitter, Set<Long> bookIds) {
+            this.emitter = emitter;
+            this.bookIds = bookIds;
+        }
+
+        /**
+         * Replaces the pending update of the book; returns true when a send has to be scheduled.
+         */
+        private synchronized boolean offer(BookAvailabilityDTO availability, long now) {
+            if (closed) {
+                return false;
+            }
+            if (pending.isEmpty()) {
+                oldestPendingAt = now;
+            }
+            pending.put(availability.getBookId(), availability);
+            if (scheduled) {
+                return false;
+            }
+            scheduled = true;
+            return true;
+        }
+
+        /**
+         * Takes the pending updates, or returns null and ends the scheduled send when none are left.
+         */
+        private synchronized List<BookAvailabilityDTO> take() {
+            if (closed || pending.isEmpty()) {
+                scheduled = false;
+                return null;
+            }
+            List<BookAvailabilityDTO> batch = new ArrayList<>(pending.values());
+            pending.clear();
+            return batch;
+        }
+
+        private synchronized boolean isScheduled() {
+            return scheduled;
+        }
+
+        private synchronized boolean isClosed() {
+            return closed;
+        }
+
+        private synchronized long lagMillis(long now) {
+            return pending.isEmpty() ? 0 : now - oldestPendingAt;
+        }
+
+        /**
+         * Returns true only for the first call.
+         */
+        private synchronized boolean close() {
+            if (closed) {
+                return false;
+            }
+            closed = true;
+            pending.clear();
+            return true;
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.online.library.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.online.library.model.dto.BookDTO;
+import com.online.library.model.mapper.BookMapper;
+import com.online.library.utils.StatsProvider;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Bounded, TTL based read-through cache of single books. Entries are copied in and out so
+ * callers can never change what another request reads. Misses are loaded through the cache
+ * itself, so an eviction of a book that is being loaded waits for the load and then drops
+ * it; a row read before a concurrent write can't be put back after the write's eviction.
+ */
+@Component
+@Slf4j
+public class BookCache implements StatsProvider {
+
+    private final Cache<Long, BookDTO> cache;
+
+    private final LongAdder invalidations = new LongAdder();
+
+    public BookCache(@Value("${library.app.bookCacheSize}") long maxSize,
+                     @Value("${library.app.bookCacheTtl}") long ttlSeconds) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .build();
+    }
+
+    public BookDTO get(Long bookId, Function<Long, BookDTO> loader) {
+        BookDTO bookDTO = cache.get(bookId, id -> copy(loader.apply(id)));
+        return bookDTO != null ? copy(bookDTO) : null;
+    }
+
+    /**
+     * Drops the cached book. Inside a transaction the entry is dropped again once it
+     * completes, so a read that raced the uncommitted write cannot leave a stale copy.
+     */
+    public void evict(Long bookId) {
+        if (bookId == null) {
+            return;
+        }
+        log.debug("Evicting cached book {}!", bookId);
+        cache.invalidate(bookId);
+        invalidations.increment();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    cache.invalidate(bookId);
+                }
+            });
+        }
+    }
+
+    private BookDTO copy(BookDTO bookDTO) {
+        return BookMapper.INSTANCE.copy(bookDTO);
+    }
+
+    @Override
+    public String getStatsName() {
+        return "bookCache";
+    }
+
+    @Override
+    public Map<String, Object> getStats() {
+        CacheStats stats = cache.stats();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("size", cache.estimatedSize());
+        result.put("hits", stats.hitCount());
+        result.put("misses", stats.missCount());
+        result.put("hitRatio", stats.hitRate());
+        result.put("evictions", stats.evictionCount());
+        result.put("invalidations", invalidations.sum());
+        return result;
+    }
+}
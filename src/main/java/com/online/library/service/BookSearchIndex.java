@@ -0,0 +1,182 @@
+package com.online.library.service;
+
+import com.online.library.model.Book;
+import com.online.library.repository.BookRepository;
+import com.online.library.utils.StatsProvider;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+/**
+ * In-memory inverted index over the tokenised title and author of every book. Posting
+ * lists are kept sorted by book ID and hold the weighted term frequency, title terms
+ * counting double. Results are ranked by tf-idf.
+ */
+@Component
+@Slf4j
+public class BookSearchIndex implements StatsProvider {
+
+    private static final int TITLE_WEIGHT = 2;
+
+    private static final int AUTHOR_WEIGHT = 1;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    private final Map<String, TreeMap<Long, Integer>> postings = new HashMap<>();
+
+    private final Map<Long, Map<String, Integer>> documents = new HashMap<>();
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @Transactional(readOnly = true)
+    public void rebuild() {
+        lock.writeLock().lock();
+        try {
+            postings.clear();
+            documents.clear();
+            try (Stream<Book> books = bookRepository.streamAllOrderedById()) {
+                books.forEach(book -> addDocument(book.getId(), book.getTitle(), book.getAuthor()));
+            }
+            log.info("Indexed {} books with {} distinct terms", documents.size(), postings.size());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void index(Long bookId, String title, String author) {
+        if (bookId == null) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            removeDocument(bookId);
+            addDocument(bookId, title, author);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(Long bookId) {
+        lock.writeLock().lock();
+        try {
+            removeDocument(bookId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the IDs of the books matching any of the query terms, best match first.
+     */
+    public List<Long> search(String query, int limit) {
+        Set<String> terms = new LinkedHashSet<>(tokenize(query));
+        if (terms.isEmpty() || limit <= 0) {
+            return new ArrayList<>();
+        }
+
+        Map<Long, Double> scores = new HashMap<>();
+        lock.readLock().lock();
+        try {
+            int documentCount = documents.size();
+            for (String term : terms) {
+                TreeMap<Long, Integer> postingList = postings.get(term);
+                if (postingList == null) {
+                    continue;
+                }
+                double idf = Math.log(1.0 + (double) documentCount / postingList.size());
+                postingList.forEach((bookId, frequency) -> scores.merge(bookId, frequency * idf, Double::sum));
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        List<Map.Entry<Long, Double>> ranked = new ArrayList<>(scores.entrySet());
+        ranked.sort(Map.Entry.<Long, Double>comparingByValue().reversed().thenComparing(Map.Entry.<Long, Double>comparingByKey()));
+        List<Long> result = new ArrayList<>(Math.min(limit, ranked.size()));
+        for (int i = 0; i < ranked.size() && i < limit; i++) {
+            result.add(ranked.get(i).getKey());
+        }
+        return result;
+    }
+
+    static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) {
+            return tokens;
+        }
+        for (String token : text.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{Nd}]+")) {
+            if (!token.isEmpty()) {
+                tokens.add(token);
+            }
+        }
+        return tokens;
+    }
+
+    private void addDocument(Long bookId, String title, String author) {
+        Map<String, Integer> frequencies = new HashMap<>();
+        for (String token : tokenize(title)) {
+            frequencies.merge(token, TITLE_WEIGHT, Integer::sum);
+        }
+        for (String token : tokenize(author)) {
+            frequencies.merge(token, AUTHOR_WEIGHT, Integer::sum);
+        }
+        frequencies.forEach((term, frequency) ->
+                postings.computeIfAbsent(term, key -> new TreeMap<>()).put(bookId, frequency));
+        documents.put(bookId, frequencies);
+    }
+
+    private void removeDocument(Long bookId) {
+        Map<String, Integer> frequencies = documents.remove(bookId);
+        if (frequencies == null) {
+            return;
+        }
+        for (String term : frequencies.keySet()) {
+            TreeMap<Long, Integer> postingList = postings.get(term);
+            if (postingList != null) {
+                postingList.remove(bookId);
+                if (postingList.isEmpty()) {
+                    postings.remove(term);
+                }
+            }
+        }
+    }
+
+    @Override
+    public String getStatsName() {
+        return "bookSearchIndex";
+    }
+
+    @Override
+    public Map<String, Object> getStats() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        lock.readLock().lock();
+        try {
+            result.put("documents", documents.size());
+            result.put("terms", postings.size());
+        } finally {
+            lock.readLock().unlock();
+        }
+        return result;
+    }
+}
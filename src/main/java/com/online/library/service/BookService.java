@@ -1,19 +1,56 @@
 package com.online.library.service;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.online.library.exception.BadRequestException;
+import com.online.library.exception.RecordInUseException;
 import com.online.library.exception.RecordNotFoundException;
+import com.online.library.exception.VersionConflictException;
 import com.online.library.model.Book;
+import com.online.library.model.Loan;
+import com.online.library.model.dto.BatchItemResultDTO;
 import com.online.library.model.dto.BookDTO;
+import com.online.library.model.dto.BulkImportResultDTO;
+import com.online.library.model.mapper.BookMapper;
 import com.online.library.repository.BookRepository;
+import com.online.library.repository.CustomerRepository;
+import com.online.library.repository.LoanRepository;
 import com.online.library.utils.Constants;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.LinkedHashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
 
 @Service
 @Slf4j
@@ -22,92 +59,605 @@ public class BookService {
     @Autowired
     private BookRepository bookRepository;
 
+    @Autowired
+    private BookSearchIndex bookSearchIndex;
+
+    @Autowired
+    private BookSuggestionTrie bookSuggestionTrie;
+
+    @Autowired
+    private LoanRepository loanRepository;
+
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    @Autowired
+    private BookCache bookCache;
+
+    @Autowired
+    private CatalogVersion catalogVersion;
+
+    @Autowired
+    private InventoryEngine inventoryEngine;
+
+    @Autowired
+    private HoldService holdService;
+
+    @Autowired
+    private OptimisticRetry optimisticRetry;
+
+    @Autowired
+    private AvailabilityBroadcaster availabilityBroadcaster;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Value("${library.app.loanPeriod}")
+    private long loanPeriodMillis;
+
+    private static final int EXPORT_FLUSH_INTERVAL = 500;
+
+    private static final String BOOK_ENTITY = "book";
+
+    private static final String TAKE_COPY_SQL = "UPDATE books SET number_of_copies = number_of_copies - 1, "
+            + "version = version + 1 WHERE id = ? AND number_of_copies > 0";
+
+    private static final String PUT_BACK_COPY_SQL =
+            "UPDATE books SET number_of_copies = number_of_copies + 1, version = version + 1 WHERE id = ?";
+
+    private static final String INSERT_LOAN_SQL = "INSERT INTO loans (book_id, customer_id, loaned_at, due_at) VALUES (?, ?, ?, ?)";
+
+    @Transactional(readOnly = true)
     public BookDTO get(Long bookId) {
         log.debug("Finding book by id {}!", bookId);
-        return bookRepository.findById(bookId)
-                .map(this::toBookDTO)
+        BookDTO bookDTO = bookCache.get(bookId, id -> bookRepository.findBookDTOById(id)
                 .orElseThrow(() -> new RecordNotFoundException(
-                        Constants.RECORD_NOT_FOUND_EXCEPTION));
+                        Constants.RECORD_NOT_FOUND_EXCEPTION)));
+        if (inventoryEngine.isEnabled()) {
+            bookDTO.setNumberOfCopies(inventoryEngine.available(bookId));
+        }
+        return bookDTO;
     }
 
-    private <U> BookDTO toBookDTO(Book book) {
-        BookDTO bookDTO = new BookDTO();
-        BeanUtils.copyProperties(book,bookDTO);
+    private BookDTO toBookDTO(Book book) {
+        return BookMapper.INSTANCE.toBookDTO(book);
+    }
+
+    /**
+     * With the inventory engine enabled the stored count lags behind its counters until the
+     * journal is flushed, so lists show the engine's count instead.
+     */
+    private BookDTO withAvailableCopies(BookDTO bookDTO) {
+        if (inventoryEngine.isEnabled()) {
+            bookDTO.setNumberOfCopies(inventoryEngine.available(bookDTO.getId(), bookDTO.getNumberOfCopies()));
+        }
         return bookDTO;
     }
 
 
-    public List<BookDTO> getBooks() {
-        log.debug("Getting all books!");
-        List<Book> books = bookRepository.findAll();
-        List<BookDTO> bookDTOS = new ArrayList();
-        for (Book book : books) {
-            BookDTO bookDTO = new BookDTO();
-            BeanUtils.copyProperties(book, bookDTO);
-            bookDTOS.add(bookDTO);
+    @Transactional(readOnly = true)
+    public List<BookDTO> getBooks(Long afterId, int limit) {
+        log.debug("Getting books after id {}!", afterId);
+        List<BookDTO> bookDTOS = bookRepository.findBookDTOsAfter(afterId,
+                PageRequest.of(0, Math.max(1, Math.min(limit, Constants.MAX_PAGE_SIZE))));
+        bookDTOS.forEach(this::withAvailableCopies);
+        return bookDTOS;
+    }
+
+    public List<BookDTO> search(String query, int limit) {
+        log.debug("Searching books for {}!", query);
+        List<Long> bookIds = bookSearchIndex.search(query, Math.max(1, Math.min(limit, Constants.MAX_PAGE_SIZE)));
+        if (bookIds.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Map<Long, Book> books = new HashMap<>();
+        for (Book book : bookRepository.findAllById(bookIds)) {
+            books.put(book.getId(), book);
+        }
+        List<BookDTO> bookDTOS = new ArrayList<>(books.size());
+        for (Long bookId : bookIds) {
+            Book book = books.get(bookId);
+            if (book != null) {
+                bookDTOS.add(withAvailableCopies(toBookDTO(book)));
+            }
         }
         return bookDTOS;
     }
 
+    public long getCatalogVersion() {
+        return catalogVersion.current();
+    }
+
+    public List<String> suggest(String prefix, int limit) {
+        log.debug("Suggesting completions for {}!", prefix);
+        return bookSuggestionTrie.suggest(prefix, limit);
+    }
+
+    /**
+     * Writes every book as newline delimited JSON, reading them through a forward-only
+     * cursor and detaching each entity once written so the persistence context stays flat.
+     */
+    @Transactional(readOnly = true)
+    public long exportBooks(OutputStream outputStream) throws IOException {
+        log.debug("Exporting all books!");
+        long exported = 0;
+        try (Stream<Book> books = bookRepository.streamAllOrderedById();
+             JsonGenerator generator = objectMapper.createGenerator(outputStream)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.setRootValueSeparator(null);
+            Iterator<Book> iterator = books.iterator();
+            while (iterator.hasNext()) {
+                Book book = iterator.next();
+                generator.writeObject(withAvailableCopies(toBookDTO(book)));
+                generator.writeRaw('\n');
+                entityManager.detach(book);
+                if (++exported % EXPORT_FLUSH_INTERVAL == 0) {
+                    generator.flush();
+                }
+            }
+        }
+        return exported;
+    }
+
     public BookDTO create(BookDTO bookDTO) {
         log.debug("Add new book with title {} from {}!", bookDTO.getTitle(), bookDTO.getAuthor());
-        Book book = new Book();
-        BeanUtils.copyProperties(bookDTO, book);
-        BeanUtils.copyProperties(bookRepository.save(book), bookDTO);
+        bookDTO = toBookDTO(bookRepository.save(BookMapper.INSTANCE.toBook(bookDTO)));
+        catalogVersion.bump();
+        bookSearchIndex.index(bookDTO.getId(), bookDTO.getTitle(), bookDTO.getAuthor());
+        bookSuggestionTrie.index(bookDTO.getId(), bookDTO.getTitle(), bookDTO.getAuthor());
         return bookDTO;
     }
 
 
-    public BookDTO findDuplicate(BookDTO bookDTO) {
-        log.debug("Check if customer to be added already exists!");
-        Optional<Book> duplicateBook = bookRepository.findBookByTitleAndAuthor(bookDTO.getTitle(), bookDTO.getAuthor());
-        if(duplicateBook.isPresent()) {
-            BeanUtils.copyProperties(duplicateBook.get(), bookDTO);
-            return bookDTO;
+    /**
+     * Imports a streamed JSON array of books. Rows are read one at a time, duplicates within a
+     * batch are merged into their number of copies, and every batch costs one lookup of the
+     * existing titles plus batched inserts and updates before the persistence context is cleared.
+     * Anything but an array of book objects is a bad request and nothing is imported: holds are
+     * only served once the whole payload has been read, and the search index and suggestion trie
+     * only learn the imported books after the import commits.
+     */
+    @Transactional
+    public BulkImportResultDTO importBooks(InputStream inputStream) throws IOException {
+        log.debug("Importing books in bulk!");
+        long start = System.nanoTime();
+        BulkImportResultDTO result = new BulkImportResultDTO();
+        List<Book> importedBooks = new ArrayList<>();
+        Map<Long, Integer> addedCopies = new HashMap<>();
+        try (JsonParser parser = objectMapper.createParser(inputStream)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new BadRequestException(Constants.MALFORMED_BULK_IMPORT_EXCEPTION);
+            }
+            Map<String, BookDTO> batch = new LinkedHashMap<>();
+            JsonToken token;
+            while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+                if (token != JsonToken.START_OBJECT) {
+                    throw new BadRequestException(Constants.MALFORMED_BULK_IMPORT_EXCEPTION);
+                }
+                BookDTO bookDTO = objectMapper.readValue(parser, BookDTO.class);
+                result.setReceived(result.getReceived() + 1);
+                if (isBlank(bookDTO.getTitle()) || isBlank(bookDTO.getAuthor())) {
+                    result.setRejected(result.getRejected() + 1);
+                    continue;
+                }
+                bookDTO.setNumberOfCopies(copiesOf(bookDTO));
+                BookDTO existing = batch.putIfAbsent(bookKey(bookDTO.getTitle(), bookDTO.getAuthor()), bookDTO);
+                if (existing != null) {
+                    existing.setNumberOfCopies(existing.getNumberOfCopies() + bookDTO.getNumberOfCopies());
+                    result.setMerged(result.getMerged() + 1);
+                }
+                if (batch.size() >= Constants.BULK_IMPORT_BATCH_SIZE) {
+                    importBatch(batch.values(), result, importedBooks, addedCopies);
+                    batch.clear();
+                }
+            }
+            importBatch(batch.values(), result, importedBooks, addedCopies);
+        } catch (JsonProcessingException e) {
+            throw new BadRequestException(Constants.MALFORMED_BULK_IMPORT_EXCEPTION);
+        }
+        addedCopies.forEach(holdService::assignAddedCopies);
+        indexAfterCommit(importedBooks);
+
+        long elapsedNanos = System.nanoTime() - start;
+        result.setElapsedMillis(elapsedNanos / 1_000_000);
+        result.setRowsPerSecond(elapsedNanos == 0 ? 0 : result.getReceived() * 1_000_000_000.0 / elapsedNanos);
+        log.info("Imported {} books in {} ms ({} rows/s)", result.getReceived(), result.getElapsedMillis(),
+                String.format("%.1f", result.getRowsPerSecond()));
+        return result;
+    }
+
+    private void importBatch(Collection<BookDTO> batch, BulkImportResultDTO result,
+                             List<Book> importedBooks, Map<Long, Integer> addedCopies) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        Map<String, Book> existingBooks = new HashMap<>();
+        List<String> titles = new ArrayList<>(batch.size());
+        for (BookDTO bookDTO : batch) {
+            titles.add(bookDTO.getTitle());
+        }
+        for (Book book : bookRepository.findByTitleIn(titles)) {
+            existingBooks.put(bookKey(book.getTitle(), book.getAuthor()), book);
+        }
+
+        List<Book> batchBooks = new ArrayList<>(batch.size());
+        for (BookDTO bookDTO : batch) {
+            Book book = existingBooks.get(bookKey(bookDTO.getTitle(), bookDTO.getAuthor()));
+            if (book != null) {
+                book.setNumberOfCopies(book.getNumberOfCopies() + bookDTO.getNumberOfCopies());
+                addedCopies.merge(book.getId(), bookDTO.getNumberOfCopies(), Integer::sum);
+                result.setMerged(result.getMerged() + 1);
+            } else {
+                book = Book.builder()
+                        .title(bookDTO.getTitle())
+                        .author(bookDTO.getAuthor())
+                        .numberOfCopies(bookDTO.getNumberOfCopies())
+                        .build();
+                entityManager.persist(book);
+                result.setInserted(result.getInserted() + 1);
+            }
+            batchBooks.add(book);
+        }
+        entityManager.flush();
+        entityManager.clear();
+
+        catalogVersion.bump();
+        for (Book book : batchBooks) {
+            bookCache.evict(book.getId());
+            inventoryEngine.invalidate(book.getId());
+            availabilityBroadcaster.publish(book.getId());
+        }
+        importedBooks.addAll(batchBooks);
+    }
+
+    private void indexAfterCommit(List<Book> importedBooks) {
+        Runnable index = () -> {
+            for (Book book : importedBooks) {
+                bookSearchIndex.index(book.getId(), book.getTitle(), book.getAuthor());
+                bookSuggestionTrie.index(book.getId(), book.getTitle(), book.getAuthor());
+            }
+        };
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    index.run();
+                }
+            });
+        } else {
+            index.run();
         }
-        return null;
     }
 
+    private static String bookKey(String title, String author) {
+        return title + '\u0000' + author;
+    }
+
+    private static int copiesOf(BookDTO bookDTO) {
+        Integer copies = bookDTO.getNumberOfCopies();
+        return copies == null || copies < 1 ? 1 : copies;
+    }
+
+    private static boolean isBlank(String value) {
+        return value == null || value.trim().isEmpty();
+    }
+
+    /**
+     * Adds the copies to the existing book with a single update, or inserts the book when there
+     * is none, then reads the row back. New rows take their id from the entity's pooled sequence.
+     * When two requests insert the same book concurrently the loser hits the unique index and
+     * adds its copies to the winner's row instead.
+     */
+    public BookDTO createOrAddCopy(BookDTO bookDTO) {
+        log.debug("Upserting book with title {} from {}!", bookDTO.getTitle(), bookDTO.getAuthor());
+        int copies = copiesOf(bookDTO);
+        if (bookRepository.addBookCopies(bookDTO.getTitle(), bookDTO.getAuthor(), copies) == 0) {
+            try {
+                bookRepository.save(Book.builder()
+                        .title(bookDTO.getTitle())
+                        .author(bookDTO.getAuthor())
+                        .numberOfCopies(copies)
+                        .build());
+            } catch (DataIntegrityViolationException e) {
+                log.debug("Concurrent insert of book {} detected, retrying!", bookDTO.getTitle());
+                bookRepository.addBookCopies(bookDTO.getTitle(), bookDTO.getAuthor(), copies);
+            }
+        }
+        BookDTO result = bookRepository.findBookDTOByTitleAndAuthor(bookDTO.getTitle(), bookDTO.getAuthor())
+                .orElseThrow(() -> new RecordNotFoundException(Constants.RECORD_NOT_FOUND_EXCEPTION));
+        catalogVersion.bump();
+        bookCache.evict(result.getId());
+        inventoryEngine.invalidate(result.getId());
+        if (holdService.assignAddedCopies(result.getId(), copies) > 0) {
+            result = readBook(result.getId());
+        }
+        availabilityBroadcaster.publish(result.getId());
+        bookSearchIndex.index(result.getId(), result.getTitle(), result.getAuthor());
+        bookSuggestionTrie.index(result.getId(), result.getTitle(), result.getAuthor());
+        return result;
+    }
+
+    /**
+     * Renames the book with a single update conditioned on its version. A version sent by the
+     * client is checked as is and a mismatch is a conflict; without one the current version is
+     * read and the update retried when a concurrent write, such as a loan, gets in between.
+     */
     public BookDTO update(BookDTO bookDTO) {
         log.debug("Updating book with id {}!", bookDTO.getId());
-        if (bookRepository.existsById(bookDTO.getId())) {
-            Book book = bookRepository.getById(bookDTO.getId());
-            book.setTitle(bookDTO.getTitle());
-            book.setAuthor(bookDTO.getAuthor());
-            BeanUtils.copyProperties(bookRepository.save(book), bookDTO);
-            return bookDTO;
+        Long expectedVersion = bookDTO.getVersion();
+        BookDTO result = optimisticRetry.run(BOOK_ENTITY, expectedVersion == null, () -> {
+            Long version = expectedVersion;
+            if (version == null) {
+                Optional<BookDTO> current = bookRepository.findBookDTOById(bookDTO.getId());
+                if (!current.isPresent()) {
+                    return null;
+                }
+                version = current.get().getVersion();
+            }
+            if (bookRepository.updateBookAtVersion(bookDTO.getId(), bookDTO.getTitle(), bookDTO.getAuthor(),
+                    version) == 0) {
+                if (bookRepository.existsById(bookDTO.getId())) {
+                    throw new VersionConflictException(Constants.VERSION_CONFLICT_EXCEPTION);
+                }
+                return null;
+            }
+            return bookRepository.findBookDTOById(bookDTO.getId()).orElse(null);
+        });
+        if (result == null) {
+            return null;
         }
-        return null;
-
+        catalogVersion.bump();
+        bookCache.evict(result.getId());
+        bookSearchIndex.index(result.getId(), result.getTitle(), result.getAuthor());
+        bookSuggestionTrie.index(result.getId(), result.getTitle(), result.getAuthor());
+        return result;
     }
 
+    /**
+     * Deletes the book. A book that loans or holds still refer to is kept, and the foreign key
+     * that stops the delete is reported as a conflict.
+     */
     public void delete(Long bookId) {
         log.debug("Delete book with id {}!", bookId);
-        bookRepository.deleteById(bookId);
+        try {
+            bookRepository.deleteById(bookId);
+        } catch (DataIntegrityViolationException e) {
+            throw new RecordInUseException(Constants.RECORD_IN_USE_EXCEPTION);
+        }
+        catalogVersion.bump();
+        bookCache.evict(bookId);
+        inventoryEngine.invalidate(bookId);
+        bookSearchIndex.remove(bookId);
+        bookSuggestionTrie.remove(bookId);
     }
 
+    /**
+     * Takes a copy with a single guarded update and records the loan. The update only
+     * matches while copies are left, so concurrent loans can never drive the count negative;
+     * no matched row means no copy was taken.
+     * With the inventory engine enabled the copy is taken from its counter instead.
+     */
     @Transactional
-    public BookDTO addBookCopy(BookDTO bookDTO) {
-        Book book = new Book();
-        BeanUtils.copyProperties(bookDTO, book);
-        bookRepository.incrementBookCopies(book.getId());
-        return bookRepository.findById(book.getId())
-                .map(this::toBookDTO)
-                .orElseThrow(() -> new RecordNotFoundException(
-                        Constants.RECORD_NOT_FOUND_EXCEPTION));
+    public BookDTO loanBook(Long id, Long customerId) {
+        log.debug("Customer {} is loaning book with id {}!", customerId, id);
+        if (inventoryEngine.isEnabled()) {
+            BookDTO bookDTO = get(id);
+            if (!inventoryEngine.take(id)) {
+                throw new RecordNotFoundException(Constants.BOOK_COPIES_NOT_FOUND_EXCEPTION);
+            }
+            recordLoan(bookRepository.getById(id), customerId);
+            catalogVersion.bump();
+            availabilityBroadcaster.publish(id);
+            bookDTO.setNumberOfCopies(inventoryEngine.available(id));
+            return bookDTO;
+        }
+        if (bookRepository.takeBookCopy(id) == 0) {
+            throw new RecordNotFoundException(bookRepository.existsById(id)
+                    ? Constants.BOOK_COPIES_NOT_FOUND_EXCEPTION
+                    : Constants.RECORD_NOT_FOUND_EXCEPTION);
+        }
+        recordLoan(bookRepository.getById(id), customerId);
+        catalogVersion.bump();
+        bookCache.evict(id);
+        availabilityBroadcaster.publish(id);
+        return readBook(id);
     }
 
+    /**
+     * Closes the customer's oldest open loan of the book. The copy goes to the oldest waiting
+     * hold if there is one, otherwise back on the shelf.
+     */
     @Transactional
-    public BookDTO loanBook(Long id) {
-        Book book = bookRepository.getById(id);
-        if(book.getNumberOfCopies() > 0) {
-            bookRepository.decrementBookCopies(id);
-            return bookRepository.findById(id)
-                    .map(this::toBookDTO)
-                    .orElseThrow(() -> new RecordNotFoundException(
-                            Constants.RECORD_NOT_FOUND_EXCEPTION));
+    public BookDTO returnBook(Long id, Long customerId) {
+        log.debug("Customer {} is returning book with id {}!", customerId, id);
+        Loan loan = loanRepository.findFirstByBookIdAndCustomerIdAndReturnedAtIsNullOrderByIdAsc(id, customerId)
+                .orElseThrow(() -> new RecordNotFoundException(Constants.LOAN_NOT_FOUND_EXCEPTION));
+        loan.setReturnedAt(Instant.now());
+        if (holdService.assignReturnedCopy(id)) {
+            return get(id);
+        }
+        if (inventoryEngine.isEnabled()) {
+            inventoryEngine.release(id);
+            catalogVersion.bump();
+            availabilityBroadcaster.publish(id);
+            return get(id);
+        }
+        if (bookRepository.putBackBookCopy(id) == 0) {
+            throw new RecordNotFoundException(Constants.RECORD_NOT_FOUND_EXCEPTION);
+        }
+        catalogVersion.bump();
+        bookCache.evict(id);
+        availabilityBroadcaster.publish(id);
+        return readBook(id);
+    }
+
+    /**
+     * Reads the book back through a projection, which always hits the database, so a row the
+     * persistence context loaded before a bulk update can't hide the updated count.
+     */
+    private BookDTO readBook(Long id) {
+        return bookRepository.findBookDTOById(id)
+                .orElseThrow(() -> new RecordNotFoundException(Constants.RECORD_NOT_FOUND_EXCEPTION));
+    }
+
+    /**
+     * Loans a stack of books in one transaction, reporting each item on its own. The guarded
+     * updates go out as one JDBC batch in ascending book ID order, so two desks loaning
+     * overlapping stacks lock the rows in the same order and can't deadlock.
+     */
+    @Transactional
+    public List<BatchItemResultDTO> loanBooks(List<Long> bookIds, Long customerId) {
+        log.debug("Customer {} is loaning {} books!", customerId, bookIds.size());
+        List<Integer> order = orderById(bookIds);
+        boolean[] loaned = new boolean[bookIds.size()];
+        if (inventoryEngine.isEnabled()) {
+            for (int index : order) {
+                try {
+                    loaned[index] = inventoryEngine.take(bookIds.get(index));
+                } catch (RecordNotFoundException e) {
+                    loaned[index] = false;
+                }
+            }
         } else {
-            throw new RecordNotFoundException(Constants.BOOK_COPIES_NOT_FOUND_EXCEPTION);
+            List<Object[]> batch = new ArrayList<>(order.size());
+            for (int index : order) {
+                batch.add(new Object[]{bookIds.get(index)});
+            }
+            int[] updated = jdbcTemplate.batchUpdate(TAKE_COPY_SQL, batch);
+            for (int i = 0; i < updated.length; i++) {
+                loaned[order.get(i)] = updated[i] > 0;
+            }
+        }
+
+        Instant now = Instant.now();
+        Timestamp loanedAt = Timestamp.from(now);
+        Timestamp dueAt = Timestamp.from(now.plusMillis(loanPeriodMillis));
+        List<Object[]> loans = new ArrayList<>(order.size());
+        for (int index : order) {
+            if (loaned[index]) {
+                loans.add(new Object[]{bookIds.get(index), customerId, loanedAt, dueAt});
+            }
+        }
+        if (!loans.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_LOAN_SQL, loans);
+        }
+        return batchResults(bookIds, loaned, Constants.BOOK_COPIES_NOT_FOUND_EXCEPTION);
+    }
+
+    /**
+     * Returns a stack of books in one transaction, reporting each item on its own. The open
+     * loans are read with one query, and the copies not claimed by a hold go back on the
+     * shelf in one JDBC batch, in ascending book ID order.
+     */
+    @Transactional
+    public List<BatchItemResultDTO> returnBooks(List<Long> bookIds, Long customerId) {
+        log.debug("Customer {} is returning {} books!", customerId, bookIds.size());
+        List<Integer> order = orderById(bookIds);
+        Set<Long> distinctIds = distinctIds(bookIds);
+        Map<Long, Deque<Loan>> openLoans = new HashMap<>();
+        if (!distinctIds.isEmpty()) {
+            for (Loan loan : loanRepository.findByCustomerIdAndBookIdInAndReturnedAtIsNullOrderByIdAsc(customerId, distinctIds)) {
+                openLoans.computeIfAbsent(loan.getBook().getId(), id -> new ArrayDeque<>()).add(loan);
+            }
+        }
+
+        Instant now = Instant.now();
+        boolean[] returned = new boolean[bookIds.size()];
+        List<Object[]> putBack = new ArrayList<>(order.size());
+        for (int index : order) {
+            Long id = bookIds.get(index);
+            Deque<Loan> loans = openLoans.get(id);
+            if (loans == null || loans.isEmpty()) {
+                continue;
+            }
+            loans.poll().setReturnedAt(now);
+            returned[index] = true;
+            if (holdService.assignReturnedCopy(id)) {
+                continue;
+            }
+            if (inventoryEngine.isEnabled()) {
+                inventoryEngine.release(id);
+            } else {
+                putBack.add(new Object[]{id});
+            }
+        }
+        if (!putBack.isEmpty()) {
+            jdbcTemplate.batchUpdate(PUT_BACK_COPY_SQL, putBack);
+        }
+        return batchResults(bookIds, returned, Constants.LOAN_NOT_FOUND_EXCEPTION);
+    }
+
+    private List<BatchItemResultDTO> batchResults(List<Long> bookIds, boolean[] succeeded, String failure) {
+        Set<Long> changed = new LinkedHashSet<>();
+        for (int i = 0; i < bookIds.size(); i++) {
+            if (succeeded[i]) {
+                changed.add(bookIds.get(i));
+            }
+        }
+        if (!changed.isEmpty()) {
+            catalogVersion.bump();
+            changed.forEach(bookCache::evict);
+            changed.forEach(availabilityBroadcaster::publish);
+        }
+
+        Map<Long, BookDTO> books = new HashMap<>();
+        Set<Long> distinctIds = distinctIds(bookIds);
+        if (!distinctIds.isEmpty()) {
+            for (BookDTO bookDTO : bookRepository.findBookDTOsByIdIn(distinctIds)) {
+                if (inventoryEngine.isEnabled()) {
+                    bookDTO.setNumberOfCopies(inventoryEngine.available(bookDTO.getId()));
+                }
+                books.put(bookDTO.getId(), bookDTO);
+            }
+        }
+
+        List<BatchItemResultDTO> results = new ArrayList<>(bookIds.size());
+        for (int i = 0; i < bookIds.size(); i++) {
+            BookDTO bookDTO = books.get(bookIds.get(i));
+            String error = null;
+            if (!succeeded[i]) {
+                error = bookDTO != null ? failure : Constants.RECORD_NOT_FOUND_EXCEPTION;
+            }
+            results.add(BatchItemResultDTO.builder()
+                    .bookId(bookIds.get(i))
+                    .success(succeeded[i])
+                    .numberOfCopies(bookDTO != null ? bookDTO.getNumberOfCopies() : null)
+                    .error(error)
+                    .build());
         }
+        return results;
+    }
+
+    private static List<Integer> orderById(List<Long> bookIds) {
+        List<Integer> order = new ArrayList<>(bookIds.size());
+        for (int i = 0; i < bookIds.size(); i++) {
+            if (bookIds.get(i) != null) {
+                order.add(i);
+            }
+        }
+        order.sort(Comparator.comparing(bookIds::get));
+        return order;
+    }
+
+    private static Set<Long> distinctIds(List<Long> bookIds) {
+        Set<Long> distinctIds = new LinkedHashSet<>(bookIds);
+        distinctIds.remove(null);
+        return distinctIds;
+    }
+
+    private void recordLoan(Book book, Long customerId) {
+        Instant now = Instant.now();
+        loanRepository.save(Loan.builder()
+                .book(book)
+                .customer(customerRepository.getById(customerId))
+                .loanedAt(now)
+                .dueAt(now.plusMillis(loanPeriodMillis))
+                .build());
     }
 }
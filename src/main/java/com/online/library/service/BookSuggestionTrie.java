@@ -0,0 +1,212 @@
+package com.online.library.service;
+
+import com.online.library.model.Book;
+import com.online.library.repository.BookRepository;
+import com.online.library.utils.StatsProvider;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * Prefix trie over the normalised titles and authors of every book. Each node keeps its
+ * top completions precomputed, weighted by how many books share the value, so a lookup
+ * only walks the prefix. Writes are serialised; reads never lock.
+ */
+@Component
+@Slf4j
+public class BookSuggestionTrie implements StatsProvider {
+
+    private static final Comparator<Completion> BY_WEIGHT = Comparator.comparingInt(Completion::getWeight).reversed()
+            .thenComparing(Completion::getKey);
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    private final int topCompletions;
+
+    private final Node root = new Node();
+
+    private final Map<Long, String[]> bookValues = new HashMap<>();
+
+    private int nodeCount = 1;
+
+    public BookSuggestionTrie(@Value("${library.app.suggestionTopCompletions}") int topCompletions) {
+        this.topCompletions = topCompletions;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @Transactional(readOnly = true)
+    public void rebuild() {
+        try (Stream<Book> books = bookRepository.streamAllOrderedById()) {
+            books.forEach(book -> index(book.getId(), book.getTitle(), book.getAuthor()));
+        }
+        log.info("Loaded {} books into the suggestion trie with {} nodes", bookValues.size(), nodeCount);
+    }
+
+    public synchronized void index(Long bookId, String title, String author) {
+        if (bookId == null) {
+            return;
+        }
+        remove(bookId);
+        String[] values = {title, author};
+        for (String value : values) {
+            add(value, 1);
+        }
+        bookValues.put(bookId, values);
+    }
+
+    public synchronized void remove(Long bookId) {
+        String[] values = bookValues.remove(bookId);
+        if (values != null) {
+            for (String value : values) {
+                add(value, -1);
+            }
+        }
+    }
+
+    public List<String> suggest(String prefix, int limit) {
+        List<String> suggestions = new ArrayList<>();
+        Node node = root;
+        for (char character : normalize(prefix).toCharArray()) {
+            node = node.children.get(character);
+            if (node == null) {
+                return suggestions;
+            }
+        }
+        for (Completion completion : node.top) {
+            if (suggestions.size() >= limit) {
+                break;
+            }
+            suggestions.add(completion.getText());
+        }
+        return suggestions;
+    }
+
+    static String normalize(String value) {
+        if (value == null) {
+            return "";
+        }
+        return value.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+
+    private void add(String value, int delta) {
+        String key = normalize(value);
+        if (key.isEmpty()) {
+            return;
+        }
+
+        List<Node> path = new ArrayList<>(key.length() + 1);
+        Node node = root;
+        path.add(node);
+        for (char character : key.toCharArray()) {
+            Node child = node.children.get(character);
+            if (child == null) {
+                if (delta < 0) {
+                    return;
+                }
+                child = new Node();
+                node.children.put(character, child);
+                nodeCount++;
+            }
+            node = child;
+            path.add(node);
+        }
+
+        Completion current = node.completion;
+        int weight = (current != null ? current.getWeight() : 0) + delta;
+        String text = current != null ? current.getText() : value.trim();
+        node.completion = weight > 0 ? new Completion(key, text, weight) : null;
+
+        for (int depth = path.size() - 1; depth >= 0; depth--) {
+            Node pathNode = path.get(depth);
+            if (depth > 0 && pathNode.completion == null && pathNode.children.isEmpty()) {
+                path.get(depth - 1).children.remove(key.charAt(depth - 1));
+                nodeCount--;
+                continue;
+            }
+            pathNode.top = computeTop(pathNode);
+        }
+    }
+
+    private List<Completion> computeTop(Node node) {
+        List<Completion> candidates = new ArrayList<>();
+        if (node.completion != null) {
+            candidates.add(node.completion);
+        }
+        for (Node child : node.children.values()) {
+            candidates.addAll(child.top);
+        }
+        candidates.sort(BY_WEIGHT);
+        if (candidates.size() > topCompletions) {
+            candidates = new ArrayList<>(candidates.subList(0, topCompletions));
+        }
+        return Collections.unmodifiableList(candidates);
+    }
+
+    @Override
+    public String getStatsName() {
+        return "bookSuggestionTrie";
+    }
+
+    @Override
+    public synchronized Map<String, Object> getStats() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("books", bookValues.size());
+        result.put("nodes", nodeCount);
+        return result;
+    }
+
+    private static final class Node {
+
+        private final Map<Character, Node> children = new ConcurrentHashMap<>();
+
+        private volatile Completion completion;
+
+        private volatile List<Completion> top = Collections.emptyList();
+    }
+
+    private static final class Completion {
+
+        private final String key;
+
+        private final String text;
+
+        private final int weight;
+
+        private Completion(String key, String text, int weight) {
+            this.key = key;
+            this.text = text;
+            this.weight = weight;
+        }
+
+        private String getKey() {
+            return key;
+        }
+
+        private String getText() {
+            return text;
+        }
+
+        private int getWeight() {
+            return weight;
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.online.library.service;
+
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Version of the book catalog as a whole, bumped on every book write and used as the ETag
+ * of the book list. It is seeded from the clock so tags handed out before a restart never
+ * match the new counter.
+ */
+@Component
+public class CatalogVersion {
+
+    private final AtomicLong version = new AtomicLong(System.currentTimeMillis());
+
+    public long current() {
+        return version.get();
+    }
+
+    /**
+     * Inside a transaction the counter is bumped again once it completes, so a list read
+     * that raced the uncommitted write is not served under the new tag.
+     */
+    public void bump() {
+        version.incrementAndGet();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    version.incrementAndGet();
+                }
+            });
+        }
+    }
+}
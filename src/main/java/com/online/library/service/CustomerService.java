@@ -1,17 +1,22 @@
 package com.online.library.service;
 
+import com.online.library.exception.DuplicateRecordException;
+import com.online.library.exception.RecordInUseException;
 import com.online.library.exception.RecordNotFoundException;
-import com.online.library.model.Customer;
+import com.online.library.exception.VersionConflictException;
 import com.online.library.model.dto.CustomerDTO;
 import com.online.library.repository.CustomerRepository;
 import com.online.library.utils.Constants;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
-import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
 
 @Service
 @Slf4j
@@ -20,46 +25,98 @@ public class CustomerService {
     @Autowired
     private CustomerRepository customerRepository;
 
+    @Autowired
+    private PrincipalCache principalCache;
+
+    @Autowired
+    private EmailRegistry emailRegistry;
+
+    @Autowired
+    private OptimisticRetry optimisticRetry;
+
+    private static final String CUSTOMER_ENTITY = "customer";
+
+    @Transactional(readOnly = true)
     public CustomerDTO get(Long id) {
         log.debug("Finding customer by id {}!", id);
-        return customerRepository.findById(id)
-                .map(this::toCustomerDTO)
+        return customerRepository.findCustomerDTOById(id)
                 .orElseThrow(() -> new RecordNotFoundException(
                         Constants.RECORD_NOT_FOUND_EXCEPTION));
     }
 
-    private <U> CustomerDTO toCustomerDTO(Customer customer) {
-        CustomerDTO customerDTO = new CustomerDTO();
-        BeanUtils.copyProperties(customer,customerDTO);
-        return customerDTO;
+    @Transactional(readOnly = true)
+    public List<CustomerDTO> getCustomers(Long afterId, int limit) {
+        log.debug("Getting customers after id {}!", afterId);
+        return customerRepository.findCustomerDTOsAfter(afterId,
+                PageRequest.of(0, Math.max(1, Math.min(limit, Constants.MAX_PAGE_SIZE))));
     }
 
-    public List<CustomerDTO> getCustomers() {
-        log.debug("Getting all customers!");
-        List<Customer> customers = customerRepository.findAll();
-        List<CustomerDTO> customerDTOS = new ArrayList();
-        for(Customer customer : customers){
-            CustomerDTO customerDTO = new CustomerDTO();
-            BeanUtils.copyProperties(customer,customerDTO);
-            customerDTOS.add(customerDTO);
+    /**
+     * Changes the customer with a single update conditioned on its version, retried like
+     * book updates when the client didn't send a version. The update only matches the version
+     * read just before it, so the email read with it is the one the principal was cached under.
+     */
+    public CustomerDTO update(CustomerDTO customerDTO) {
+        log.debug("Updating customer with id {}!", customerDTO.getId());
+        Long expectedVersion = customerDTO.getVersion();
+        CustomerDTO previous = optimisticRetry.run(CUSTOMER_ENTITY, expectedVersion == null, () -> {
+            Optional<CustomerDTO> current = customerRepository.findCustomerDTOById(customerDTO.getId());
+            if (!current.isPresent()) {
+                return null;
+            }
+            Long version = expectedVersion == null ? current.get().getVersion() : expectedVersion;
+            if (!version.equals(current.get().getVersion()) || updateAtVersion(customerDTO, version) == 0) {
+                if (customerRepository.existsById(customerDTO.getId())) {
+                    throw new VersionConflictException(Constants.VERSION_CONFLICT_EXCEPTION);
+                }
+                return null;
+            }
+            return current.get();
+        });
+        if (previous == null) {
+            return null;
         }
-        return customerDTOS;
+        principalCache.evict(previous.getEmail());
+        emailRegistry.add(customerDTO.getEmail());
+        return CustomerDTO.builder()
+                .id(previous.getId())
+                .email(customerDTO.getEmail())
+                .name(customerDTO.getName())
+                .version(previous.getVersion() + 1)
+                .build();
     }
 
-    public CustomerDTO update(CustomerDTO customerDTO) {
-        log.debug("Updating customer with id {}!", customerDTO.getId());
-        if(customerRepository.existsById(customerDTO.getId())) {
-            Customer customer = customerRepository.getById(customerDTO.getId());
-            customer.setName(customerDTO.getName());
-            customer.setEmail(customerDTO.getEmail());
-            BeanUtils.copyProperties(customerRepository.save(customer),customerDTO);
-            return customerDTO;
+    private int updateAtVersion(CustomerDTO customerDTO, Long version) {
+        try {
+            return customerRepository.updateCustomerAtVersion(customerDTO.getId(), customerDTO.getEmail(),
+                    customerDTO.getName(), version);
+        } catch (DataIntegrityViolationException e) {
+            if (isDuplicateEmail(e)) {
+                throw new DuplicateRecordException(Constants.DUPLICATE_EMAIL_EXCEPTION);
+            }
+            throw e;
         }
-        return null;
     }
 
+    /**
+     * Tells a violation of the unique email constraint apart from any other integrity
+     * violation, which is not a duplicate and must not be reported as one.
+     */
+    public static boolean isDuplicateEmail(DataIntegrityViolationException exception) {
+        String message = exception.getMostSpecificCause().getMessage();
+        return message != null && message.toLowerCase(Locale.ROOT).contains(Constants.CUSTOMER_EMAIL_CONSTRAINT);
+    }
+
+    /**
+     * Deletes the customer, unless loans or holds still refer to them.
+     */
     public void delete(Long id) {
         log.debug("Delete customer with id {}!", id);
-        customerRepository.deleteById(id);
+        customerRepository.findById(id).ifPresent(customer -> principalCache.evict(customer.getEmail()));
+        try {
+            customerRepository.deleteById(id);
+        } catch (DataIntegrityViolationException e) {
+            throw new RecordInUseException(Constants.RECORD_IN_USE_EXCEPTION);
+        }
     }
 }
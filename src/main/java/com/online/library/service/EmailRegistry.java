@@ -0,0 +1,80 @@
+package com.online.library.service;
+
+import com.online.library.repository.CustomerRepository;
+import com.online.library.utils.BloomFilter;
+import com.online.library.utils.StatsProvider;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-memory membership filter over registered emails. It can only answer "definitely new"
+ * or "maybe taken"; the unique constraint on customers.email stays the source of truth.
+ */
+@Component
+@Slf4j
+public class EmailRegistry implements StatsProvider {
+
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    private final BloomFilter emails;
+
+    private final LongAdder definitelyNew = new LongAdder();
+
+    private final LongAdder maybeTaken = new LongAdder();
+
+    public EmailRegistry(@Value("${library.app.emailRegistryExpectedCustomers}") long expectedCustomers,
+                         @Value("${library.app.emailRegistryFalsePositiveRate}") double falsePositiveProbability) {
+        this.emails = new BloomFilter(expectedCustomers, falsePositiveProbability);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void warmUp() {
+        customerRepository.findAllEmails().forEach(this::add);
+        log.info("Loaded {} customer emails into the email registry", emails.getInsertions());
+    }
+
+    public boolean mightExist(String email) {
+        if (emails.mightContain(normalize(email))) {
+            maybeTaken.increment();
+            return true;
+        }
+        definitelyNew.increment();
+        return false;
+    }
+
+    public void add(String email) {
+        if (email != null) {
+            emails.put(normalize(email));
+        }
+    }
+
+    private String normalize(String email) {
+        return email.trim().toLowerCase(Locale.ROOT);
+    }
+
+    @Override
+    public String getStatsName() {
+        return "emailRegistry";
+    }
+
+    @Override
+    public Map<String, Object> getStats() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("insertions", emails.getInsertions());
+        result.put("definitelyNew", definitelyNew.sum());
+        result.put("maybeTaken", maybeTaken.sum());
+        return result;
+    }
+}
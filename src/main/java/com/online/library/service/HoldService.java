@@ -0,0 +1,170 @@
+package com.online.library.service;
+
+import com.online.library.exception.DuplicateRecordException;
+import com.online.library.exception.RecordNotFoundException;
+import com.online.library.model.Hold;
+import com.online.library.model.HoldStatus;
+import com.online.library.model.Loan;
+import com.online.library.model.dto.BookDTO;
+import com.online.library.model.dto.HoldDTO;
+import com.online.library.repository.BookRepository;
+import com.online.library.repository.CustomerRepository;
+import com.online.library.repository.HoldRepository;
+import com.online.library.repository.LoanRepository;
+import com.online.library.utils.Constants;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.Optional;
+
+/**
+ * Per-book FIFO waitlist. Holds are served in ID order; a returned or newly added copy goes
+ * to the oldest waiting hold as a loan instead of onto the shelf.
+ */
+@Service
+@Slf4j
+public class HoldService {
+
+    @Autowired
+    private HoldRepository holdRepository;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    @Autowired
+    private LoanRepository loanRepository;
+
+    @Autowired
+    private InventoryEngine inventoryEngine;
+
+    @Value("${library.app.loanPeriod}")
+    private long loanPeriodMillis;
+
+    /**
+     * Queues the customer for the book. A hold only makes sense while no copy is on the shelf,
+     * so it is refused when one can be loaned right away.
+     */
+    @Transactional
+    public HoldDTO placeHold(Long bookId, Long customerId) {
+        log.debug("Customer {} is placing a hold on book with id {}!", customerId, bookId);
+        BookDTO book = bookRepository.findBookDTOById(bookId)
+                .orElseThrow(() -> new RecordNotFoundException(Constants.RECORD_NOT_FOUND_EXCEPTION));
+        int available = inventoryEngine.isEnabled() ? inventoryEngine.available(bookId) : book.getNumberOfCopies();
+        if (available > 0) {
+            throw new DuplicateRecordException(Constants.HOLD_COPIES_AVAILABLE_EXCEPTION);
+        }
+        if (holdRepository.existsByBookIdAndCustomerIdAndStatus(bookId, customerId, HoldStatus.WAITING)) {
+            throw new DuplicateRecordException(Constants.HOLD_ALREADY_PLACED_EXCEPTION);
+        }
+        Hold hold = holdRepository.save(Hold.builder()
+                .book(bookRepository.getById(bookId))
+                .customer(customerRepository.getById(customerId))
+                .status(HoldStatus.WAITING)
+                .createdAt(Instant.now())
+                .build());
+        return toHoldDTO(hold);
+    }
+
+    @Transactional(readOnly = true)
+    public HoldDTO getHold(Long holdId, Long customerId) {
+        log.debug("Finding hold with id {}!", holdId);
+        return toHoldDTO(findOwnHold(holdId, customerId));
+    }
+
+    @Transactional
+    public void cancelHold(Long holdId, Long customerId) {
+        log.debug("Customer {} is cancelling hold with id {}!", customerId, holdId);
+        Hold hold = findOwnHold(holdId, customerId);
+        if (holdRepository.closeWaitingHold(hold.getId(), HoldStatus.CANCELLED, null) == 0) {
+            throw new RecordNotFoundException(Constants.HOLD_NOT_WAITING_EXCEPTION);
+        }
+    }
+
+    /**
+     * Hands a returned copy to the oldest waiting hold by loaning it to that customer. Each
+     * candidate is claimed with a guarded update, so two concurrent returns never fulfil the
+     * same hold. Returns false when nobody is waiting and the copy should go back on the shelf.
+     */
+    @Transactional
+    public boolean assignReturnedCopy(Long bookId) {
+        Optional<Hold> head;
+        while ((head = holdRepository.findFirstByBookIdAndStatusOrderByIdAsc(bookId, HoldStatus.WAITING)).isPresent()) {
+            Hold hold = head.get();
+            Instant now = Instant.now();
+            if (holdRepository.closeWaitingHold(hold.getId(), HoldStatus.FULFILLED, now) > 0) {
+                loanRepository.save(Loan.builder()
+                        .book(hold.getBook())
+                        .customer(hold.getCustomer())
+                        .loanedAt(now)
+                        .dueAt(now.plusMillis(loanPeriodMillis))
+                        .build());
+                log.debug("Returned copy of book {} assigned to hold {}!", bookId, hold.getId());
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Hands copies that were just added to the shelf to the waiting holds, oldest first, so new
+     * stock doesn't jump the queue. Every copy is taken off the shelf before its hold is
+     * claimed and put back if nobody is waiting anymore. Returns how many copies were assigned.
+     */
+    @Transactional
+    public int assignAddedCopies(Long bookId, int copies) {
+        int assigned = 0;
+        while (assigned < copies
+                && holdRepository.existsByBookIdAndStatus(bookId, HoldStatus.WAITING)
+                && takeCopy(bookId)) {
+            if (!assignReturnedCopy(bookId)) {
+                putBackCopy(bookId);
+                break;
+            }
+            assigned++;
+        }
+        if (assigned > 0) {
+            log.debug("{} added copies of book {} assigned to holds!", assigned, bookId);
+        }
+        return assigned;
+    }
+
+    private boolean takeCopy(Long bookId) {
+        return inventoryEngine.isEnabled() ? inventoryEngine.take(bookId) : bookRepository.takeBookCopy(bookId) > 0;
+    }
+
+    private void putBackCopy(Long bookId) {
+        if (inventoryEngine.isEnabled()) {
+            inventoryEngine.release(bookId);
+        } else {
+            bookRepository.putBackBookCopy(bookId);
+        }
+    }
+
+    private Hold findOwnHold(Long holdId, Long customerId) {
+        return holdRepository.findById(holdId)
+                .filter(hold -> hold.getCustomer().getId().equals(customerId))
+                .orElseThrow(() -> new RecordNotFoundException(Constants.RECORD_NOT_FOUND_EXCEPTION));
+    }
+
+    private HoldDTO toHoldDTO(Hold hold) {
+        Long bookId = hold.getBook().getId();
+        Long position = hold.getStatus() == HoldStatus.WAITING
+                ? holdRepository.countByBookIdAndStatusAndIdLessThan(bookId, HoldStatus.WAITING, hold.getId()) + 1
+                : null;
+        return HoldDTO.builder()
+                .id(hold.getId())
+                .bookId(bookId)
+                .status(hold.getStatus())
+                .position(position)
+                .createdAt(hold.getCreatedAt())
+                .fulfilledAt(hold.getFulfilledAt())
+                .build();
+    }
+}
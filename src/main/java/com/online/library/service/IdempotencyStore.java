@@ -0,0 +1,130 @@
+package com.online.library.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.online.library.exception.DuplicateRecordException;
+import com.online.library.utils.Constants;
+import com.online.library.utils.StatsProvider;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Bounded, TTL based store of the results of recent mutations, keyed by customer and the
+ * client's idempotency key. A replayed key gets the original result without running the
+ * mutation again; a request racing the first one waits for its result. Failed mutations
+ * changed nothing, so they are not stored and may be retried with the same key.
+ */
+@Component
+@Slf4j
+public class IdempotencyStore implements StatsProvider {
+
+    private final Cache<String, Entry> cache;
+
+    private final LongAdder executions = new LongAdder();
+
+    private final LongAdder replays = new LongAdder();
+
+    private final LongAdder mismatches = new LongAdder();
+
+    public IdempotencyStore(@Value("${library.app.idempotencyKeySize}") long maxSize,
+                            @Value("${library.app.idempotencyKeyTtl}") long ttlSeconds) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .build();
+    }
+
+    /**
+     * Runs the mutation once per key. The request describes the mutation, and reusing a key
+     * for a different one is rejected.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> Outcome<T> execute(Long customerId, String key, String request, Supplier<T> mutation) {
+        String scopedKey = customerId + ":" + key;
+        Entry entry = new Entry(request);
+        Entry existing = cache.asMap().putIfAbsent(scopedKey, entry);
+        if (existing != null) {
+            if (!existing.request.equals(request)) {
+                mismatches.increment();
+                throw new DuplicateRecordException(Constants.IDEMPOTENCY_KEY_REUSED_EXCEPTION);
+            }
+            log.debug("Replaying {} for customer {} with idempotency key {}!", request, customerId, key);
+            try {
+                T result = (T) existing.result.join();
+                replays.increment();
+                return new Outcome<>(result, true);
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof Error) {
+                    throw (Error) e.getCause();
+                }
+                throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+            }
+        }
+
+        try {
+            T result = mutation.get();
+            entry.result.complete(result);
+            executions.increment();
+            return new Outcome<>(result, false);
+        } catch (Throwable e) {
+            cache.asMap().remove(scopedKey, entry);
+            entry.result.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    @Override
+    public String getStatsName() {
+        return "idempotencyStore";
+    }
+
+    @Override
+    public Map<String, Object> getStats() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("size", cache.estimatedSize());
+        result.put("executions", executions.sum());
+        result.put("replays", replays.sum());
+        result.put("mismatches", mismatches.sum());
+        return result;
+    }
+
+    public static final class Outcome<T> {
+
+        private final T result;
+
+        private final boolean replayed;
+
+        private Outcome(T result, boolean replayed) {
+            this.result = result;
+            this.replayed = replayed;
+        }
+
+        public T getResult() {
+            return result;
+        }
+
+        public boolean isReplayed() {
+            return replayed;
+        }
+    }
+
+    private static final class Entry {
+
+        private final String request;
+
+        private final CompletableFuture<Object> result = new CompletableFuture<>();
+
+        private Entry(String request) {
+            this.request = request;
+        }
+    }
+}
@@ -0,0 +1,375 @@
+package com.online.library.service;
+
+import com.online.library.exception.RecordNotFoundException;
+import com.online.library.model.InventoryFlush;
+import com.online.library.repository.BookRepository;
+import com.online.library.repository.InventoryFlushRepository;
+import com.online.library.utils.Constants;
+import com.online.library.utils.InventoryJournal;
+import com.online.library.utils.StatsProvider;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Optional in-memory owner of the available copy counts, so loans and returns of a hot title
+ * don't queue on its row lock. Counters change with a compare-and-set that never goes below
+ * zero. Every change is journaled to disk before it is acknowledged, and the journal is
+ * applied to the books table in coalesced batches.
+ *
+ * A counter is loaded from the table plus the changes not flushed yet. Loading takes the
+ * book's stripe exclusively, while changes hold it shared, so a reload never misses a change
+ * that was already counted.
+ */
+@Service
+@Slf4j
+public class InventoryEngine implements StatsProvider {
+
+    private static final String APPLY_DELTA_SQL =
+            "UPDATE books SET number_of_copies = number_of_copies + ?, version = version + 1 WHERE id = ?";
+
+    private static final int STRIPES = 64;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private InventoryFlushRepository inventoryFlushRepository;
+
+    @Autowired
+    private BookCache bookCache;
+
+    @Autowired
+    private CatalogVersion catalogVersion;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private final boolean enabled;
+
+    private final String journalDirectory;
+
+    private final Map<Long, AtomicInteger> available = new ConcurrentHashMap<>();
+
+    private final Map<Long, AtomicInteger> unflushed = new ConcurrentHashMap<>();
+
+    private final ReadWriteLock[] stripes = new ReadWriteLock[STRIPES];
+
+    private final ReadWriteLock flushLock = new ReentrantReadWriteLock();
+
+    private final LongAdder taken = new LongAdder();
+
+    private final LongAdder released = new LongAdder();
+
+    private final LongAdder rejected = new LongAdder();
+
+    private final LongAdder flushedSegments = new LongAdder();
+
+    private final LongAdder flushedBooks = new LongAdder();
+
+    private InventoryJournal journal;
+
+    private volatile boolean ready;
+
+    public InventoryEngine(@Value("${library.app.inventoryEngineEnabled}") boolean enabled,
+                           @Value("${library.app.inventoryJournalDirectory}") String journalDirectory) {
+        this.enabled = enabled;
+        this.journalDirectory = journalDirectory;
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new ReentrantReadWriteLock();
+        }
+    }
+
+    /**
+     * Applies the segments left behind by the previous run before any counter is loaded.
+     * Until then the engine reports itself disabled and copies change in the table directly.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public void recover() {
+        if (!enabled) {
+            return;
+        }
+        journal = new InventoryJournal(Paths.get(journalDirectory));
+        List<Long> segments = journal.closedSegments();
+        for (Long segment : segments) {
+            flushSegment(segment, false);
+        }
+        ready = true;
+        log.info("Inventory engine started, recovered {} journal segments", segments.size());
+    }
+
+    public boolean isEnabled() {
+        return ready;
+    }
+
+    public int available(Long bookId) {
+        return counter(bookId).get();
+    }
+
+    /**
+     * Copies available for a book whose stored count was already read, such as a row of a
+     * listing. A loaded counter wins; otherwise the changes not flushed yet are added to the
+     * stored count, so listings don't load a counter for every book they show.
+     */
+    public int available(Long bookId, int storedCopies) {
+        AtomicInteger counter = available.get(bookId);
+        if (counter != null) {
+            return counter.get();
+        }
+        AtomicInteger pending = unflushed.get(bookId);
+        return storedCopies + (pending != null ? pending.get() : 0);
+    }
+
+    /**
+     * Takes a copy if one is available. Inside a transaction the copy is put back when the
+     * transaction rolls back.
+     */
+    public boolean take(Long bookId) {
+        long sequence;
+        ReadWriteLock stripe = stripe(bookId);
+        AtomicInteger counter = lockCounter(bookId);
+        try {
+            int copies;
+            do {
+                copies = counter.get();
+                if (copies <= 0) {
+                    rejected.increment();
+                    return false;
+                }
+            } while (!counter.compareAndSet(copies, copies - 1));
+            sequence = record(bookId, -1, counter);
+        } finally {
+            stripe.readLock().unlock();
+        }
+        journal.sync(sequence);
+        taken.increment();
+        compensateOnRollback(bookId, 1);
+        return true;
+    }
+
+    /**
+     * Puts a copy back. Inside a transaction the copy is taken again when the transaction
+     * rolls back.
+     */
+    public void release(Long bookId) {
+        journal.sync(change(bookId, 1));
+        released.increment();
+        compensateOnRollback(bookId, -1);
+    }
+
+    /**
+     * Drops the counter after the copies were changed in the table directly, so the next
+     * access reloads it. Inside a transaction it is dropped again once the transaction completes.
+     */
+    public void invalidate(Long bookId) {
+        if (!ready || bookId == null) {
+            return;
+        }
+        drop(bookId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    drop(bookId);
+                }
+            });
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${library.app.inventoryFlushInterval}")
+    public void flush() {
+        if (!ready) {
+            return;
+        }
+        journal.rotate();
+        for (Long segment : journal.closedSegments()) {
+            flushSegment(segment, true);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws IOException {
+        if (ready) {
+            ready = false;
+            journal.close();
+        }
+    }
+
+    private void flushSegment(long segment, boolean running) {
+        Map<Long, Integer> deltas = journal.read(segment);
+        List<Object[]> batch = new ArrayList<>(deltas.size());
+        deltas.forEach((bookId, delta) -> batch.add(new Object[]{delta, bookId}));
+
+        flushLock.writeLock().lock();
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                if (!inventoryFlushRepository.existsById(segment)) {
+                    jdbcTemplate.batchUpdate(APPLY_DELTA_SQL, batch);
+                    inventoryFlushRepository.save(new InventoryFlush(segment, Instant.now()));
+                }
+            });
+            if (running) {
+                deltas.forEach((bookId, delta) -> unflushed.computeIfPresent(bookId,
+                        (id, pending) -> pending.addAndGet(-delta) == 0 ? null : pending));
+            }
+        } finally {
+            flushLock.writeLock().unlock();
+        }
+
+        deltas.keySet().forEach(bookCache::evict);
+        catalogVersion.bump();
+        journal.delete(segment);
+        inventoryFlushRepository.deleteById(segment);
+        flushedSegments.increment();
+        flushedBooks.add(deltas.size());
+        log.debug("Flushed journal segment {} with changes to {} books", segment, deltas.size());
+    }
+
+    private long change(Long bookId, int delta) {
+        ReadWriteLock stripe = stripe(bookId);
+        AtomicInteger counter = lockCounter(bookId);
+        try {
+            counter.addAndGet(delta);
+            return record(bookId, delta, counter);
+        } finally {
+            stripe.readLock().unlock();
+        }
+    }
+
+    /**
+     * Journals the change and counts it as not flushed yet. Both happen under the flush lock,
+     * so a flush that already reads the change from its segment can't subtract it before it
+     * was counted and leave a pending change behind that never goes away.
+     */
+    private long record(Long bookId, int delta, AtomicInteger counter) {
+        flushLock.readLock().lock();
+        try {
+            long sequence = journal.append(bookId, delta);
+            unflushed.computeIfAbsent(bookId, id -> new AtomicInteger()).addAndGet(delta);
+            return sequence;
+        } catch (RuntimeException e) {
+            counter.addAndGet(-delta);
+            throw e;
+        } finally {
+            flushLock.readLock().unlock();
+        }
+    }
+
+    private void compensateOnRollback(Long bookId, int delta) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status == STATUS_ROLLED_BACK) {
+                        journal.sync(change(bookId, delta));
+                    }
+                }
+            });
+        }
+    }
+
+    private AtomicInteger counter(Long bookId) {
+        AtomicInteger counter = available.get(bookId);
+        return counter != null ? counter : loadCounter(bookId);
+    }
+
+    /**
+     * Returns the book's counter with its stripe held shared; the caller unlocks it.
+     */
+    private AtomicInteger lockCounter(Long bookId) {
+        ReadWriteLock stripe = stripe(bookId);
+        while (true) {
+            stripe.readLock().lock();
+            AtomicInteger counter = available.get(bookId);
+            if (counter != null) {
+                return counter;
+            }
+            stripe.readLock().unlock();
+            loadCounter(bookId);
+        }
+    }
+
+    private AtomicInteger loadCounter(Long bookId) {
+        ReadWriteLock stripe = stripe(bookId);
+        stripe.writeLock().lock();
+        try {
+            return available.computeIfAbsent(bookId, this::load);
+        } finally {
+            stripe.writeLock().unlock();
+        }
+    }
+
+    private AtomicInteger load(Long bookId) {
+        flushLock.readLock().lock();
+        try {
+            int copies = bookRepository.findBookDTOById(bookId)
+                    .orElseThrow(() -> new RecordNotFoundException(Constants.RECORD_NOT_FOUND_EXCEPTION))
+                    .getNumberOfCopies();
+            AtomicInteger pending = unflushed.get(bookId);
+            return new AtomicInteger(copies + (pending != null ? pending.get() : 0));
+        } finally {
+            flushLock.readLock().unlock();
+        }
+    }
+
+    private void drop(Long bookId) {
+        ReadWriteLock stripe = stripe(bookId);
+        stripe.writeLock().lock();
+        try {
+            available.remove(bookId);
+        } finally {
+            stripe.writeLock().unlock();
+        }
+    }
+
+    private ReadWriteLock stripe(Long bookId) {
+        return stripes[(Long.hashCode(bookId) & 0x7fffffff) % STRIPES];
+    }
+
+    @Override
+    public String getStatsName() {
+        return "inventoryEngine";
+    }
+
+    @Override
+    public Map<String, Object> getStats() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("enabled", ready);
+        result.put("counters", available.size());
+        result.put("booksWithUnflushedChanges", unflushed.size());
+        result.put("taken", taken.sum());
+        result.put("released", released.sum());
+        result.put("rejected", rejected.sum());
+        result.put("flushedSegments", flushedSegments.sum());
+        result.put("flushedBooks", flushedBooks.sum());
+        return result;
+    }
+}
@@ -0,0 +1,24 @@
+package com.online.library.service;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.time.Instant;
+
+/**
+ * Published once for every loan that passes its due date while still open.
+ */
+@Getter
+@AllArgsConstructor
+@ToString
+public class LoanOverdueEvent {
+
+    private final Long loanId;
+
+    private final Long bookId;
+
+    private final Long customerId;
+
+    private final Instant dueAt;
+}
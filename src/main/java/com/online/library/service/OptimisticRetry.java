@@ -0,0 +1,107 @@
+package com.online.library.service;
+
+import com.online.library.exception.VersionConflictException;
+import com.online.library.utils.StatsProvider;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Runs conditional updates that fail with a {@link VersionConflictException} when the row
+ * changed since its version was read. Retryable attempts are repeated after a random backoff
+ * that doubles with every conflict, so writers that collided don't collide again in lockstep.
+ * Attempts and conflicts are counted per entity.
+ */
+@Component
+@Slf4j
+public class OptimisticRetry implements StatsProvider {
+
+    private final int maxAttempts;
+
+    private final long backoffMillis;
+
+    private final Map<String, Counters> counters = new ConcurrentHashMap<>();
+
+    public OptimisticRetry(@Value("${library.app.optimisticRetryAttempts}") int maxAttempts,
+                           @Value("${library.app.optimisticRetryBackoff}") long backoffMillis) {
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.backoffMillis = backoffMillis;
+    }
+
+    /**
+     * Runs the attempt, repeating it on a version conflict when it is retryable. The last
+     * conflict is rethrown once the attempts are used up.
+     */
+    public <T> T run(String entity, boolean retryable, Supplier<T> attempt) {
+        Counters entityCounters = counters.computeIfAbsent(entity, key -> new Counters());
+        int attempts = retryable ? maxAttempts : 1;
+        for (int attemptNumber = 1; ; attemptNumber++) {
+            entityCounters.attempts.increment();
+            try {
+                return attempt.get();
+            } catch (VersionConflictException e) {
+                entityCounters.conflicts.increment();
+                if (attemptNumber >= attempts) {
+                    entityCounters.failures.increment();
+                    throw e;
+                }
+                log.debug("Version conflict on {}, retrying attempt {}!", entity, attemptNumber + 1);
+                entityCounters.retries.increment();
+                backoff(attemptNumber, e);
+            }
+        }
+    }
+
+    private void backoff(int attemptNumber, VersionConflictException conflict) {
+        long bound = backoffMillis << Math.min(attemptNumber - 1, 16);
+        if (bound <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(bound + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw conflict;
+        }
+    }
+
+    @Override
+    public String getStatsName() {
+        return "optimisticRetry";
+    }
+
+    @Override
+    public Map<String, Object> getStats() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        counters.forEach((entity, entityCounters) -> {
+            long attempts = entityCounters.attempts.sum();
+            long conflicts = entityCounters.conflicts.sum();
+            Map<String, Object> entityStats = new LinkedHashMap<>();
+            entityStats.put("attempts", attempts);
+            entityStats.put("conflicts", conflicts);
+            entityStats.put("retries", entityCounters.retries.sum());
+            entityStats.put("failures", entityCounters.failures.sum());
+            entityStats.put("conflictRate", attempts == 0 ? 0.0 : (double) conflicts / attempts);
+            result.put(entity, entityStats);
+        });
+        return result;
+    }
+
+    private static final class Counters {
+
+        private final LongAdder attempts = new LongAdder();
+
+        private final LongAdder conflicts = new LongAdder();
+
+        private final LongAdder retries = new LongAdder();
+
+        private final LongAdder failures = new LongAdder();
+    }
+}
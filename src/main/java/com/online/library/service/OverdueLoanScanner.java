@@ -0,0 +1,188 @@
+package com.online.library.service;
+
+import com.online.library.model.Loan;
+import com.online.library.repository.LoanRepository;
+import com.online.library.utils.HierarchicalTimingWheel;
+import com.online.library.utils.StatsProvider;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Detects overdue loans without scanning the loans table. Every tick a bounded page of the
+ * open loans due within the lookahead is read from the due date index, continuing from
+ * where the last page ended, and put on a timing wheel; the wheel then hands back the loans
+ * whose due date has passed. After a restart the cursor starts over, so loans that fell due
+ * while the application was down are reported on the first ticks.
+ *
+ * Returned loans are not taken off the wheel. When they fire, the update that marks loans
+ * overdue only matches the ones still open, and only the loans it stamped with this tick's
+ * time are read back and published, all in one transaction. A batch that fails anywhere along
+ * the way stays unmarked, goes back on the wheel and fires again on the next tick.
+ */
+@Service
+@Slf4j
+public class OverdueLoanScanner implements StatsProvider {
+
+    private static final int WHEEL_SIZE = 64;
+
+    private static final int WHEEL_LEVELS = 4;
+
+    @Autowired
+    private LoanRepository loanRepository;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private final long tickMillis;
+
+    private final long lookaheadMillis;
+
+    private final int batchSize;
+
+    private final LongAdder loaded = new LongAdder();
+
+    private final LongAdder fired = new LongAdder();
+
+    private final LongAdder skipped = new LongAdder();
+
+    private final LongAdder totalLagMillis = new LongAdder();
+
+    private HierarchicalTimingWheel wheel;
+
+    private Instant cursorDueAt = Instant.EPOCH;
+
+    private long cursorId;
+
+    private volatile boolean ready;
+
+    private volatile int scheduled;
+
+    private volatile long lastLagMillis;
+
+    private volatile long maxLagMillis;
+
+    private volatile long rehydrationLagMillis;
+
+    private volatile long lastTickMillis;
+
+    /**
+     * The lookahead is capped at half the loan period, so a loan created after the cursor
+     * moved on is always due beyond it and picked up by a later page.
+     */
+    public OverdueLoanScanner(@Value("${library.app.overdueTickInterval}") long tickMillis,
+                              @Value("${library.app.overdueLookahead}") long lookaheadMillis,
+                              @Value("${library.app.overdueRehydrateBatchSize}") int batchSize,
+                              @Value("${library.app.loanPeriod}") long loanPeriodMillis) {
+        this.tickMillis = tickMillis;
+        this.lookaheadMillis = Math.min(lookaheadMillis, loanPeriodMillis / 2);
+        this.batchSize = batchSize;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void start() {
+        wheel = new HierarchicalTimingWheel(tickMillis, WHEEL_SIZE, WHEEL_LEVELS, System.currentTimeMillis());
+        ready = true;
+        log.info("Overdue loan scanner started with a {} ms tick and a {} ms lookahead", tickMillis, lookaheadMillis);
+    }
+
+    @Scheduled(fixedDelayString = "${library.app.overdueTickInterval}")
+    public synchronized void tick() {
+        if (!ready) {
+            return;
+        }
+        long start = System.nanoTime();
+        long now = System.currentTimeMillis();
+        rehydrate(now);
+        List<Long> due = new ArrayList<>();
+        wheel.advance(now, due::add);
+        for (int from = 0; from < due.size(); from += batchSize) {
+            List<Long> batch = due.subList(from, Math.min(due.size(), from + batchSize));
+            try {
+                fire(batch, now);
+            } catch (RuntimeException e) {
+                log.warn("Could not report {} overdue loans, retrying on the next tick", batch.size(), e);
+                for (Long loanId : batch) {
+                    wheel.add(loanId, now);
+                }
+            }
+        }
+        scheduled = wheel.size();
+        lastTickMillis = (System.nanoTime() - start) / 1_000_000;
+    }
+
+    private void rehydrate(long now) {
+        List<Loan> loans = loanRepository.findDueLoansAfter(cursorDueAt, cursorId,
+                Instant.ofEpochMilli(now + lookaheadMillis), PageRequest.of(0, batchSize));
+        for (Loan loan : loans) {
+            wheel.add(loan.getId(), loan.getDueAt().toEpochMilli());
+            cursorDueAt = loan.getDueAt();
+            cursorId = loan.getId();
+        }
+        loaded.add(loans.size());
+        rehydrationLagMillis = loans.size() < batchSize ? 0 : Math.max(0, now - cursorDueAt.toEpochMilli());
+    }
+
+    private void fire(List<Long> loanIds, long now) {
+        Instant at = Instant.ofEpochMilli(now);
+        List<Loan> overdue = transactionTemplate.execute(status -> {
+            if (loanRepository.markOverdue(loanIds, at) == 0) {
+                return Collections.<Loan>emptyList();
+            }
+            List<Loan> marked = loanRepository.findByIdInAndOverdueNotifiedAt(loanIds, at);
+            for (Loan loan : marked) {
+                log.info("Loan {} of book {} is overdue since {}", loan.getId(), loan.getBook().getId(), loan.getDueAt());
+                eventPublisher.publishEvent(new LoanOverdueEvent(loan.getId(), loan.getBook().getId(),
+                        loan.getCustomer().getId(), loan.getDueAt()));
+            }
+            return marked;
+        });
+        skipped.add(loanIds.size() - overdue.size());
+        for (Loan loan : overdue) {
+            long lag = now - loan.getDueAt().toEpochMilli();
+            lastLagMillis = lag;
+            maxLagMillis = Math.max(maxLagMillis, lag);
+            totalLagMillis.add(lag);
+            fired.increment();
+        }
+    }
+
+    @Override
+    public String getStatsName() {
+        return "overdueLoanScanner";
+    }
+
+    @Override
+    public Map<String, Object> getStats() {
+        long firedCount = fired.sum();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("scheduled", scheduled);
+        result.put("loaded", loaded.sum());
+        result.put("fired", firedCount);
+        result.put("skipped", skipped.sum());
+        result.put("lastLagMillis", lastLagMillis);
+        result.put("maxLagMillis", maxLagMillis);
+        result.put("meanLagMillis", firedCount == 0 ? 0 : totalLagMillis.sum() / firedCount);
+        result.put("rehydrationLagMillis", rehydrationLagMillis);
+        result.put("lastTickMillis", lastTickMillis);
+        return result;
+    }
+}
@@ -0,0 +1,67 @@
+package com.online.library.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.online.library.utils.StatsProvider;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Bounded, TTL based cache of resolved principals keyed by username, so that
+ * authenticated requests don't reload the customer on every call.
+ */
+@Component
+@Slf4j
+public class PrincipalCache implements StatsProvider {
+
+    private final Cache<String, UserDetails> cache;
+
+    private final LongAdder invalidations = new LongAdder();
+
+    public PrincipalCache(@Value("${library.app.principalCacheSize}") long maxSize,
+                          @Value("${library.app.principalCacheTtl}") long ttlSeconds) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .build();
+    }
+
+    public UserDetails get(String username, Function<String, UserDetails> loader) {
+        return cache.get(username, loader);
+    }
+
+    public void evict(String username) {
+        if (username != null) {
+            log.debug("Evicting cached principal {}!", username);
+            cache.invalidate(username);
+            invalidations.increment();
+        }
+    }
+
+    @Override
+    public String getStatsName() {
+        return "principalCache";
+    }
+
+    @Override
+    public Map<String, Object> getStats() {
+        CacheStats stats = cache.stats();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("size", cache.estimatedSize());
+        result.put("hits", stats.hitCount());
+        result.put("misses", stats.missCount());
+        result.put("evictions", stats.evictionCount());
+        result.put("invalidations", invalidations.sum());
+        return result;
+    }
+}
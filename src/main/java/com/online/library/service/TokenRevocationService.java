@@ -0,0 +1,124 @@
+package com.online.library.service;
+
+import com.online.library.model.RevokedToken;
+import com.online.library.repository.RevokedTokenRepository;
+import com.online.library.utils.BloomFilter;
+import com.online.library.utils.StatsProvider;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps track of revoked tokens by their ID. The revoked_tokens table is the source of
+ * truth; two generations of Bloom filters in front of it answer "not revoked" without a
+ * database lookup for almost every request. The filters rotate once per token lifetime,
+ * so an entry always outlives the token it was added for.
+ */
+@Service
+@Slf4j
+public class TokenRevocationService implements StatsProvider {
+
+    @Autowired
+    private RevokedTokenRepository revokedTokenRepository;
+
+    private final long expectedRevocations;
+
+    private final double falsePositiveProbability;
+
+    private volatile BloomFilter current;
+
+    private volatile BloomFilter previous;
+
+    private final LongAdder filterNegatives = new LongAdder();
+
+    private final LongAdder databaseLookups = new LongAdder();
+
+    private final LongAdder confirmedRevocations = new LongAdder();
+
+    public TokenRevocationService(@Value("${library.app.revocationExpectedTokens}") long expectedRevocations,
+                                  @Value("${library.app.revocationFalsePositiveRate}") double falsePositiveProbability) {
+        this.expectedRevocations = expectedRevocations;
+        this.falsePositiveProbability = falsePositiveProbability;
+        this.current = newFilter();
+        this.previous = newFilter();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void warmUp() {
+        BloomFilter filter = current;
+        revokedTokenRepository.findActiveTokenIds(Instant.now()).forEach(filter::put);
+        log.info("Loaded {} revoked tokens into the revocation filter", filter.getInsertions());
+    }
+
+    public void revoke(String tokenId, Instant expiresAt) {
+        if (tokenId == null || expiresAt == null || !expiresAt.isAfter(Instant.now())) {
+            return;
+        }
+        log.debug("Revoking token {} until {}!", tokenId, expiresAt);
+        revokedTokenRepository.save(new RevokedToken(tokenId, expiresAt));
+        current.put(tokenId);
+    }
+
+    public boolean isRevoked(String tokenId) {
+        if (tokenId == null) {
+            return false;
+        }
+        if (!current.mightContain(tokenId) && !previous.mightContain(tokenId)) {
+            filterNegatives.increment();
+            return false;
+        }
+        databaseLookups.increment();
+        boolean revoked = revokedTokenRepository.existsById(tokenId);
+        if (revoked) {
+            confirmedRevocations.increment();
+        }
+        return revoked;
+    }
+
+    @Scheduled(fixedRateString = "${library.app.jwtExpiration}", initialDelayString = "${library.app.jwtExpiration}")
+    public void rotate() {
+        log.debug("Rotating the revocation filters!");
+        previous = current;
+        current = newFilter();
+    }
+
+    @Scheduled(fixedDelayString = "${library.app.revocationCompactionInterval}")
+    @Transactional
+    public void compact() {
+        int removed = revokedTokenRepository.deleteExpired(Instant.now());
+        if (removed > 0) {
+            log.info("Removed {} expired revoked tokens", removed);
+        }
+    }
+
+    private BloomFilter newFilter() {
+        return new BloomFilter(expectedRevocations, falsePositiveProbability);
+    }
+
+    @Override
+    public String getStatsName() {
+        return "tokenRevocation";
+    }
+
+    @Override
+    public Map<String, Object> getStats() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("currentFilterInsertions", current.getInsertions());
+        result.put("previousFilterInsertions", previous.getInsertions());
+        result.put("filterNegatives", filterNegatives.sum());
+        result.put("databaseLookups", databaseLookups.sum());
+        result.put("confirmedRevocations", confirmedRevocations.sum());
+        return result;
+    }
+}
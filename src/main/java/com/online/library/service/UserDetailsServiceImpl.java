@@ -1,28 +1,76 @@
 package com.online.library.service;
 
+import com.online.library.model.CustomerPrincipal;
 import com.online.library.repository.CustomerRepository;
+import com.online.library.utils.Constants;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.AuthorityUtils;
 import org.springframework.security.core.userdetails.User;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.Collections;
+import java.util.List;
+import java.util.Set;
 
 @Component
-public class UserDetailsServiceImpl implements UserDetailsService {
+@Slf4j
+public class UserDetailsServiceImpl implements UserDetailsService, UserDetailsPasswordService {
 
     @Autowired
     CustomerRepository customerRepository;
 
+    @Autowired
+    PrincipalCache principalCache;
+
+    @Value("${library.app.adminEmails}")
+    private Set<String> adminEmails;
+
+    /**
+     * Loads the customer by email. Customers listed in the admin emails property are granted
+     * the admin role, which guards the internal endpoints.
+     */
     @Override
     @Transactional
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
         UserDetails user = customerRepository.findByEmail(username)
-                .map(customer -> new User(customer.getEmail(),customer.getPassword(), Collections.emptyList()))
+                .map(customer -> new CustomerPrincipal(customer.getId(), customer.getEmail(), customer.getPassword(),
+                        authoritiesOf(customer.getEmail())))
                 .orElseThrow(() -> new UsernameNotFoundException("User Not Found with username: " + username));
         return user;
     }
+
+    private List<GrantedAuthority> authoritiesOf(String email) {
+        return adminEmails.contains(email)
+                ? AuthorityUtils.createAuthorityList("ROLE_" + Constants.ADMIN_ROLE)
+                : Collections.emptyList();
+    }
+
+    /**
+     * Called by the authentication provider after a successful login when the stored hash
+     * was produced with a different cost than the configured one.
+     */
+    @Override
+    @Transactional
+    public UserDetails updatePassword(UserDetails user, String newPassword) {
+        log.debug("Rehashing password for {}!", user.getUsername());
+        customerRepository.findByEmail(user.getUsername())
+                .ifPresent(customer -> {
+                    customer.setPassword(newPassword);
+                    customerRepository.save(customer);
+                });
+        principalCache.evict(user.getUsername());
+        if (user instanceof CustomerPrincipal) {
+            return new CustomerPrincipal(((CustomerPrincipal) user).getCustomerId(), user.getUsername(), newPassword,
+                    user.getAuthorities());
+        }
+        return User.withUserDetails(user).password(newPassword).build();
+    }
 }
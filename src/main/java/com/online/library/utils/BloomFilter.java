@@ -0,0 +1,101 @@
+package com.online.library.utils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Thread safe Bloom filter over strings. A negative answer is definite, a positive answer
+ * has to be confirmed against the source of truth.
+ */
+public class BloomFilter {
+
+    private final AtomicLongArray bits;
+
+    private final long bitSize;
+
+    private final int hashFunctions;
+
+    private final LongAdder insertions = new LongAdder();
+
+    public BloomFilter(long expectedInsertions, double falsePositiveProbability) {
+        long expected = Math.max(expectedInsertions, 1);
+        long optimalBits = (long) (-expected * Math.log(falsePositiveProbability) / (Math.log(2) * Math.log(2)));
+        int words = (int) Math.max(1, (optimalBits + 63) / 64);
+        this.bits = new AtomicLongArray(words);
+        this.bitSize = (long) words * 64;
+        this.hashFunctions = Math.max(1, (int) Math.round((double) bitSize / expected * Math.log(2)));
+    }
+
+    public void put(String value) {
+        long hash = hash(value);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 1; i <= hashFunctions; i++) {
+            setBit(index(h1, h2, i));
+        }
+        insertions.increment();
+    }
+
+    public boolean mightContain(String value) {
+        long hash = hash(value);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 1; i <= hashFunctions; i++) {
+            if (!getBit(index(h1, h2, i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public long getInsertions() {
+        return insertions.sum();
+    }
+
+    public long getBitSize() {
+        return bitSize;
+    }
+
+    public int getHashFunctions() {
+        return hashFunctions;
+    }
+
+    private long index(int h1, int h2, int i) {
+        int combined = h1 + i * h2;
+        if (combined < 0) {
+            combined = ~combined;
+        }
+        return combined % bitSize;
+    }
+
+    private void setBit(long index) {
+        int word = (int) (index >>> 6);
+        long mask = 1L << index;
+        long current;
+        do {
+            current = bits.get(word);
+            if ((current & mask) != 0) {
+                return;
+            }
+        } while (!bits.compareAndSet(word, current, current | mask));
+    }
+
+    private boolean getBit(long index) {
+        return (bits.get((int) (index >>> 6)) & (1L << index)) != 0;
+    }
+
+    private static long hash(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b;
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,95 @@
+package com.online.library.utils;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * BCrypt encoder that asks for a rehash whenever the stored hash was produced with a
+ * different cost than the configured one, and that can calibrate the cost to a target
+ * verification time on the current machine.
+ */
+public class CalibratedBCryptPasswordEncoder extends BCryptPasswordEncoder {
+
+    private static final Logger logger = LoggerFactory.getLogger(CalibratedBCryptPasswordEncoder.class);
+
+    private static final Pattern BCRYPT_PATTERN = Pattern.compile("\\A\\$2[aby]?\\$(\\d\\d)\\$[./0-9A-Za-z]{53}");
+
+    public static final int MIN_STRENGTH = 4;
+
+    public static final int MAX_STRENGTH = 16;
+
+    private static final String CALIBRATION_PASSWORD = "calibration-password";
+
+    private final int strength;
+
+    public CalibratedBCryptPasswordEncoder(int strength) {
+        super(strength);
+        this.strength = strength;
+    }
+
+    public int getStrength() {
+        return strength;
+    }
+
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        Integer storedStrength = strengthOf(encodedPassword);
+        return storedStrength != null && storedStrength != strength;
+    }
+
+    public static Integer strengthOf(String encodedPassword) {
+        if (encodedPassword == null) {
+            return null;
+        }
+        Matcher matcher = BCRYPT_PATTERN.matcher(encodedPassword);
+        if (!matcher.find()) {
+            return null;
+        }
+        return Integer.parseInt(matcher.group(1));
+    }
+
+    /**
+     * Picks the strength whose verification time is closest to the target. Every step
+     * doubles the work, so the search stops at the first strength that reaches the target.
+     */
+    public static int calibrate(long targetMillis) {
+        double previousMillis = 0;
+        for (int candidate = MIN_STRENGTH; candidate <= MAX_STRENGTH; candidate++) {
+            double millis = measureVerificationMillis(candidate);
+            logger.info("BCrypt strength {} verifies in {} ms", candidate, String.format("%.2f", millis));
+            if (millis >= targetMillis) {
+                if (candidate > MIN_STRENGTH && targetMillis / previousMillis < millis / targetMillis) {
+                    return candidate - 1;
+                }
+                return candidate;
+            }
+            previousMillis = millis;
+        }
+        return MAX_STRENGTH;
+    }
+
+    static double measureVerificationMillis(int strength) {
+        BCryptPasswordEncoder encoder = new BCryptPasswordEncoder(strength);
+        String encoded = encoder.encode(CALIBRATION_PASSWORD);
+        encoder.matches(CALIBRATION_PASSWORD, encoded);
+
+        int rounds = 3;
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < rounds; i++) {
+            long start = System.nanoTime();
+            encoder.matches(CALIBRATION_PASSWORD, encoded);
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return best / 1_000_000.0;
+    }
+
+    public static void main(String[] args) {
+        long targetMillis = args.length > 0 ? Long.parseLong(args[0]) : 50;
+        int strength = calibrate(targetMillis);
+        System.out.println("library.app.passwordHashStrength= " + strength);
+    }
+}
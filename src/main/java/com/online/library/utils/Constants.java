@@ -2,7 +2,31 @@ package com.online.library.utils;
 
 public class Constants {
 
+    public static final int DEFAULT_PAGE_SIZE = 50;
+    public static final int MAX_PAGE_SIZE = 500;
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    public static final String NDJSON_VALUE = "application/x-ndjson";
+    public static final String CATALOG_ETAG_PREFIX = "catalog-";
+    public static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+    public static final String IDEMPOTENT_REPLAYED_HEADER = "Idempotent-Replayed";
+    public static final int MAX_IDEMPOTENCY_KEY_LENGTH = 255;
+    public static final int BULK_IMPORT_BATCH_SIZE = 50;
+    public static final int MAX_LOAN_BATCH_SIZE = 100;
+    public static final int MAX_AVAILABILITY_SUBSCRIPTION_SIZE = 100;
+    public static final String CUSTOMER_EMAIL_CONSTRAINT = "uk_customers_email";
+    public static final String ADMIN_ROLE = "ADMIN";
+
     public static final String RECORD_NOT_FOUND_EXCEPTION = "The record you are trying to access doesn't exist!";
     public static final String BOOK_COPIES_NOT_FOUND_EXCEPTION = "The book you are trying to loan doesn't have enough copies!";
+    public static final String MALFORMED_BULK_IMPORT_EXCEPTION = "The books to import must be a JSON array of book objects!";
+    public static final String RECORD_IN_USE_EXCEPTION = "The record you are trying to delete still has loans or holds!";
+    public static final String LOAN_NOT_FOUND_EXCEPTION = "You don't have an open loan for the book you are trying to return!";
+    public static final String HOLD_ALREADY_PLACED_EXCEPTION = "You already have a hold on this book!";
+    public static final String HOLD_NOT_WAITING_EXCEPTION = "The hold you are trying to cancel is no longer waiting!";
+    public static final String HOLD_COPIES_AVAILABLE_EXCEPTION = "The book you are trying to hold has copies available, loan it instead!";
+    public static final String IDEMPOTENCY_KEY_REUSED_EXCEPTION = "The idempotency key was already used for a different request!";
+    public static final String VERSION_CONFLICT_EXCEPTION = "The record was changed in the meantime, reload it and try again!";
+    public static final String DUPLICATE_EMAIL_EXCEPTION = "An account with this email already exists!";
+    public static final String PASSWORD_HASHING_BUSY_EXCEPTION = "Too many authentication requests, please try again later!";
 
 }
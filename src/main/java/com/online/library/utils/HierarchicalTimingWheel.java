@@ -0,0 +1,133 @@
+package com.online.library.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.LongConsumer;
+
+/**
+ * Hierarchical timing wheel of IDs with an expiration time in epoch millis. Level 0 has one
+ * bucket per tick and every level above has buckets as wide as the whole level below, so a
+ * tick only empties one bucket and entries far in the future move down a level once per
+ * bucket of the level they are in. Entries beyond the top level wait in its last bucket.
+ *
+ * Entries never fire early and fire at most one tick late. Not thread safe.
+ */
+public class HierarchicalTimingWheel {
+
+    private final long tickMillis;
+
+    private final int wheelSize;
+
+    private final long[] levelTicks;
+
+    private final List<List<List<Entry>>> levels;
+
+    private final List<Entry> expired = new ArrayList<>();
+
+    private long currentTime;
+
+    private int size;
+
+    public HierarchicalTimingWheel(long tickMillis, int wheelSize, int levelCount, long startTime) {
+        this.tickMillis = tickMillis;
+        this.wheelSize = wheelSize;
+        this.levelTicks = new long[levelCount];
+        this.levels = new ArrayList<>(levelCount);
+        long levelTick = tickMillis;
+        for (int level = 0; level < levelCount; level++) {
+            levelTicks[level] = levelTick;
+            List<List<Entry>> buckets = new ArrayList<>(wheelSize);
+            for (int bucket = 0; bucket < wheelSize; bucket++) {
+                buckets.add(new ArrayList<>());
+            }
+            levels.add(buckets);
+            levelTick *= wheelSize;
+        }
+        this.currentTime = startTime - Math.floorMod(startTime, tickMillis);
+    }
+
+    public void add(long id, long expiration) {
+        place(new Entry(id, expiration));
+        size++;
+    }
+
+    /**
+     * Moves the wheel up to the given time and hands over the ID of every entry that expired
+     * before it.
+     */
+    public void advance(long now, LongConsumer consumer) {
+        drainExpired(consumer);
+        while (currentTime + tickMillis <= now) {
+            List<Entry> bucket = levels.get(0).get(bucketIndex(currentTime, 0));
+            expired.addAll(bucket);
+            bucket.clear();
+            currentTime += tickMillis;
+            for (int level = levelTicks.length - 1; level > 0; level--) {
+                if (currentTime % levelTicks[level] == 0) {
+                    cascade(level);
+                }
+            }
+            drainExpired(consumer);
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long getCurrentTime() {
+        return currentTime;
+    }
+
+    private void cascade(int level) {
+        List<Entry> bucket = levels.get(level).get(bucketIndex(currentTime, level));
+        if (bucket.isEmpty()) {
+            return;
+        }
+        List<Entry> entries = new ArrayList<>(bucket);
+        bucket.clear();
+        entries.forEach(this::place);
+    }
+
+    private void place(Entry entry) {
+        if (entry.expiration < currentTime) {
+            expired.add(entry);
+            return;
+        }
+        for (int level = 0; level < levelTicks.length; level++) {
+            long levelTick = levelTicks[level];
+            long levelStart = currentTime - Math.floorMod(currentTime, levelTick);
+            if (entry.expiration < levelStart + levelTick * wheelSize) {
+                levels.get(level).get(bucketIndex(entry.expiration, level)).add(entry);
+                return;
+            }
+        }
+        int top = levelTicks.length - 1;
+        long topStart = currentTime - Math.floorMod(currentTime, levelTicks[top]);
+        levels.get(top).get(bucketIndex(topStart + levelTicks[top] * (wheelSize - 1), top)).add(entry);
+    }
+
+    private void drainExpired(LongConsumer consumer) {
+        for (Entry entry : expired) {
+            consumer.accept(entry.id);
+        }
+        size -= expired.size();
+        expired.clear();
+    }
+
+    private int bucketIndex(long time, int level) {
+        return (int) Math.floorMod(Math.floorDiv(time, levelTicks[level]), (long) wheelSize);
+    }
+
+    private static final class Entry {
+
+        private final long id;
+
+        private final long expiration;
+
+        private Entry(long id, long expiration) {
+            this.id = id;
+            this.expiration = expiration;
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package com.online.library.utils;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Append-only journal of copy count changes, split into segments. Appending only writes the
+ * record; {@link #sync} forces it to disk, and concurrent callers share a single force. Segment
+ * IDs grow across restarts, so an ID is never reused once its segment has been deleted.
+ */
+public class InventoryJournal {
+
+    private static final String SEGMENT_PREFIX = "segment-";
+
+    private static final String SEGMENT_SUFFIX = ".journal";
+
+    private static final int RECORD_SIZE = Long.BYTES + Integer.BYTES;
+
+    private final Path directory;
+
+    private final ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE);
+
+    private final Object forceLock = new Object();
+
+    private FileChannel channel;
+
+    private long segmentId;
+
+    private long records;
+
+    private long written;
+
+    private volatile long forced;
+
+    public InventoryJournal(Path directory) {
+        this.directory = directory;
+        try {
+            Files.createDirectories(directory);
+            List<Long> segments = segments();
+            long lastId = segments.isEmpty() ? 0 : segments.get(segments.size() - 1);
+            open(Math.max(lastId + 1, System.currentTimeMillis()));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Writes the record and returns its sequence number, to be passed to {@link #sync}.
+     */
+    public synchronized long append(long bookId, int delta) {
+        record.clear();
+        record.putLong(bookId).putInt(delta).flip();
+        try {
+            while (record.hasRemaining()) {
+                channel.write(record);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        records++;
+        return ++written;
+    }
+
+    /**
+     * Returns once the record with the given sequence number is on disk.
+     */
+    public void sync(long sequence) {
+        if (forced >= sequence) {
+            return;
+        }
+        synchronized (forceLock) {
+            if (forced >= sequence) {
+                return;
+            }
+            long upTo;
+            FileChannel current;
+            synchronized (this) {
+                upTo = written;
+                current = channel;
+            }
+            try {
+                current.force(false);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            forced = upTo;
+        }
+    }
+
+    /**
+     * Closes the current segment and starts a new one, unless nothing was written to it.
+     */
+    public void rotate() {
+        synchronized (forceLock) {
+            synchronized (this) {
+                if (records == 0) {
+                    return;
+                }
+                try {
+                    channel.force(false);
+                    forced = written;
+                    channel.close();
+                    open(Math.max(segmentId + 1, System.currentTimeMillis()));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        }
+    }
+
+    /**
+     * IDs of the closed segments, oldest first.
+     */
+    public synchronized List<Long> closedSegments() {
+        try {
+            List<Long> segments = segments();
+            segments.remove(Long.valueOf(segmentId));
+            return segments;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Reads a closed segment, coalescing its records into one delta per book. A torn record
+     * at the end of the file was never acknowledged and is skipped.
+     */
+    public Map<Long, Integer> read(long segment) {
+        Map<Long, Integer> deltas = new HashMap<>();
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(segmentPath(segment)));
+            while (buffer.remaining() >= RECORD_SIZE) {
+                deltas.merge(buffer.getLong(), buffer.getInt(), Integer::sum);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        deltas.values().removeIf(delta -> delta == 0);
+        return deltas;
+    }
+
+    public void delete(long segment) {
+        try {
+            Files.deleteIfExists(segmentPath(segment));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public void close() throws IOException {
+        synchronized (forceLock) {
+            synchronized (this) {
+                channel.force(false);
+                forced = written;
+                channel.close();
+            }
+        }
+    }
+
+    private void open(long id) throws IOException {
+        segmentId = id;
+        records = 0;
+        channel = FileChannel.open(segmentPath(id), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+    }
+
+    private List<Long> segments() throws IOException {
+        List<Long> segments = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                segments.add(Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())));
+            }
+        }
+        Collections.sort(segments);
+        return segments;
+    }
+
+    private Path segmentPath(long id) {
+        return directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, id, SEGMENT_SUFFIX));
+    }
+}
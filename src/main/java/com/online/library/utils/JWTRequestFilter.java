@@ -1,6 +1,9 @@
 package com.online.library.utils;
 
+import com.online.library.service.PrincipalCache;
+import com.online.library.service.TokenRevocationService;
 import com.online.library.service.UserDetailsServiceImpl;
+import io.jsonwebtoken.Claims;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -24,6 +27,12 @@ public class JWTRequestFilter extends OncePerRequestFilter {
     @Autowired
     private UserDetailsServiceImpl userDetailsService;
 
+    @Autowired
+    private PrincipalCache principalCache;
+
+    @Autowired
+    private TokenRevocationService tokenRevocationService;
+
     private static final Logger logger = LoggerFactory.getLogger(JWTRequestFilter.class);
 
     @Override
@@ -31,10 +40,11 @@ public class JWTRequestFilter extends OncePerRequestFilter {
             throws ServletException, IOException {
         try {
             String jwt = parseJwt(request);
-            if (jwt != null && jwtUtils.validateJwtToken(jwt)) {
-                String username = jwtUtils.getUserNameFromJwtToken(jwt);
+            Claims claims = jwt != null ? jwtUtils.getVerifiedClaims(jwt) : null;
+            if (claims != null && !tokenRevocationService.isRevoked(claims.getId())) {
+                String username = claims.getSubject();
 
-                UserDetails userDetails = userDetailsService.loadUserByUsername(username);
+                UserDetails userDetails = principalCache.get(username, userDetailsService::loadUserByUsername);
 
                 UsernamePasswordAuthenticationToken authentication =
                         new UsernamePasswordAuthenticationToken(userDetails,
@@ -1,5 +1,9 @@
 package com.online.library.utils;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
 import io.jsonwebtoken.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -9,12 +13,21 @@ import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Component;
 import org.springframework.web.util.WebUtils;
 
+import javax.annotation.PostConstruct;
 import javax.servlet.http.Cookie;
 import javax.servlet.http.HttpServletRequest;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
 import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 
 @Component
-public class JWTUtils {
+public class JWTUtils implements StatsProvider {
 
     private static final Logger logger = LoggerFactory.getLogger(JWTUtils.class);
 
@@ -27,6 +40,20 @@ public class JWTUtils {
     @Value("${library.app.jwtCookie}")
     private String jwtCookie;
 
+    @Value("${library.app.jwtClaimsCacheSize}")
+    private long jwtClaimsCacheSize;
+
+    private Cache<String, Claims> verifiedClaims;
+
+    @PostConstruct
+    public void init() {
+        verifiedClaims = Caffeine.newBuilder()
+                .maximumSize(jwtClaimsCacheSize)
+                .expireAfter(new ClaimsExpiry())
+                .recordStats()
+                .build();
+    }
+
     public String getJwtFromCookies(HttpServletRequest request) {
         Cookie cookie = WebUtils.getCookie(request, jwtCookie);
         if (cookie != null) {
@@ -47,14 +74,39 @@ public class JWTUtils {
         return cookie;
     }
 
+    /**
+     * Verifies the token and returns its claims, or null if the token is not valid.
+     * Verified tokens are cached by digest until their expiration, so repeated requests
+     * with the same cookie skip the signature check and the JSON decoding.
+     */
+    public Claims getVerifiedClaims(String token) {
+        if (token == null || token.isEmpty()) {
+            logger.error("JWT claims string is empty");
+            return null;
+        }
+        String key = digest(token);
+        Claims claims = verifiedClaims.getIfPresent(key);
+        if (claims == null) {
+            claims = parseClaims(token);
+            if (claims != null) {
+                verifiedClaims.put(key, claims);
+            }
+        }
+        return claims;
+    }
+
     public String getUserNameFromJwtToken(String token) {
-        return Jwts.parser().setSigningKey(jwtSecret).parseClaimsJws(token).getBody().getSubject();
+        Claims claims = getVerifiedClaims(token);
+        return claims != null ? claims.getSubject() : null;
     }
 
     public boolean validateJwtToken(String authToken) {
+        return getVerifiedClaims(authToken) != null;
+    }
+
+    private Claims parseClaims(String authToken) {
         try {
-            Jwts.parser().setSigningKey(jwtSecret).parseClaimsJws(authToken);
-            return true;
+            return Jwts.parser().setSigningKey(jwtSecret).parseClaimsJws(authToken).getBody();
         } catch (SignatureException e) {
             logger.error("Invalid JWT signature: {}", e.getMessage());
         } catch (MalformedJwtException e) {
@@ -67,15 +119,63 @@ public class JWTUtils {
             logger.error("JWT claims string is empty: {}", e.getMessage());
         }
 
-        return false;
+        return null;
+    }
+
+    private String digest(String token) {
+        try {
+            MessageDigest messageDigest = MessageDigest.getInstance("SHA-256");
+            return Base64.getEncoder().encodeToString(messageDigest.digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
     }
 
     public String generateTokenFromUsername(String username) {
         return Jwts.builder()
+                .setId(UUID.randomUUID().toString())
                 .setSubject(username)
                 .setIssuedAt(new Date())
                 .setExpiration(new Date((new Date()).getTime() + jwtExpiration))
                 .signWith(SignatureAlgorithm.HS512, jwtSecret)
                 .compact();
     }
+
+    @Override
+    public String getStatsName() {
+        return "jwtClaimsCache";
+    }
+
+    @Override
+    public Map<String, Object> getStats() {
+        CacheStats stats = verifiedClaims.stats();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("size", verifiedClaims.estimatedSize());
+        result.put("hits", stats.hitCount());
+        result.put("misses", stats.missCount());
+        result.put("evictions", stats.evictionCount());
+        return result;
+    }
+
+    private class ClaimsExpiry implements Expiry<String, Claims> {
+
+        @Override
+        public long expireAfterCreate(String key, Claims claims, long currentTime) {
+            Date expiration = claims.getExpiration();
+            long remainingMillis = expiration != null
+                    ? expiration.getTime() - System.currentTimeMillis()
+                    : jwtExpiration;
+            return TimeUnit.MILLISECONDS.toNanos(Math.max(remainingMillis, 0));
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, Claims claims, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+
+        @Override
+        public long expireAfterRead(String key, Claims claims, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
 }
@@ -0,0 +1,139 @@
+package com.online.library.utils;
+
+import com.online.library.exception.ServiceUnavailableException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runs password hashing and verification on a dedicated, bounded pool so that a login
+ * storm cannot take every request thread. When the queue is full the caller fails fast
+ * with a {@link ServiceUnavailableException}.
+ */
+public class PooledPasswordEncoder implements PasswordEncoder, StatsProvider, DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(PooledPasswordEncoder.class);
+
+    private final PasswordEncoder delegate;
+
+    private final ThreadPoolExecutor executor;
+
+    private final long timeoutMillis;
+
+    private final LongAdder hashCount = new LongAdder();
+
+    private final LongAdder hashNanos = new LongAdder();
+
+    private final AtomicLong maxHashNanos = new AtomicLong();
+
+    private final LongAdder rejected = new LongAdder();
+
+    public PooledPasswordEncoder(PasswordEncoder delegate, int threads, int queueCapacity, long timeoutMillis) {
+        this.delegate = delegate;
+        this.timeoutMillis = timeoutMillis;
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "password-hash-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return execute(() -> delegate.encode(rawPassword));
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return execute(() -> delegate.matches(rawPassword, encodedPassword));
+    }
+
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        return delegate.upgradeEncoding(encodedPassword);
+    }
+
+    private <T> T execute(Callable<T> task) {
+        Future<T> future;
+        try {
+            future = executor.submit(() -> timed(task));
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            logger.warn("Password hashing queue is full, rejecting request");
+            throw new ServiceUnavailableException(Constants.PASSWORD_HASHING_BUSY_EXCEPTION);
+        }
+
+        try {
+            return future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            future.cancel(true);
+            throw new ServiceUnavailableException(Constants.PASSWORD_HASHING_BUSY_EXCEPTION);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            logger.warn("Password hashing timed out after {} ms", timeoutMillis);
+            throw new ServiceUnavailableException(Constants.PASSWORD_HASHING_BUSY_EXCEPTION);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private <T> T timed(Callable<T> task) throws Exception {
+        long start = System.nanoTime();
+        try {
+            return task.call();
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            hashCount.increment();
+            hashNanos.add(elapsed);
+            maxHashNanos.accumulateAndGet(elapsed, Math::max);
+        }
+    }
+
+    @Override
+    public String getStatsName() {
+        return "passwordHashing";
+    }
+
+    @Override
+    public Map<String, Object> getStats() {
+        long count = hashCount.sum();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("poolSize", executor.getPoolSize());
+        result.put("activeThreads", executor.getActiveCount());
+        result.put("queueDepth", executor.getQueue().size());
+        result.put("queueRemainingCapacity", executor.getQueue().remainingCapacity());
+        result.put("rejected", rejected.sum());
+        result.put("hashCount", count);
+        result.put("avgHashMillis", count == 0 ? 0.0 : hashNanos.sum() / 1_000_000.0 / count);
+        result.put("maxHashMillis", maxHashNanos.get() / 1_000_000.0);
+        return result;
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+    }
+}
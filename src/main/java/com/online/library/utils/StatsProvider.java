@@ -0,0 +1,10 @@
+package com.online.library.utils;
+
+import java.util.Map;
+
+public interface StatsProvider {
+
+    String getStatsName();
+
+    Map<String, Object> getStats();
+}
@@ -3,11 +3,15 @@ package com.online.library;
 import com.online.library.controller.AuthController;
 import com.online.library.model.Book;
 import com.online.library.model.dto.BookDTO;
+import com.online.library.model.dto.BulkImportResultDTO;
 import com.online.library.model.dto.LoginRequestDTO;
 import com.online.library.model.dto.RegisterRequestDTO;
 import com.online.library.repository.BookRepository;
 import com.online.library.repository.CustomerRepository;
+import com.online.library.repository.HoldRepository;
+import com.online.library.repository.LoanRepository;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
 import io.restassured.RestAssured;
 import io.restassured.http.ContentType;
 import io.restassured.response.Response;
@@ -26,7 +30,17 @@ import org.springframework.boot.web.server.LocalServerPort;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit4.SpringRunner;
 
+import java.util.List;
+
+import static com.online.library.utils.Constants.BULK_IMPORT_BATCH_SIZE;
 import static com.online.library.utils.Constants.BOOK_COPIES_NOT_FOUND_EXCEPTION;
+import static com.online.library.utils.Constants.IDEMPOTENCY_KEY_HEADER;
+import static com.online.library.utils.Constants.IDEMPOTENT_REPLAYED_HEADER;
+import static com.online.library.utils.Constants.LOAN_NOT_FOUND_EXCEPTION;
+import static com.online.library.utils.Constants.MALFORMED_BULK_IMPORT_EXCEPTION;
+import static com.online.library.utils.Constants.NDJSON_VALUE;
+import static com.online.library.utils.Constants.NEXT_CURSOR_HEADER;
+import static com.online.library.utils.Constants.RECORD_IN_USE_EXCEPTION;
 import static io.restassured.RestAssured.given;
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -38,9 +52,18 @@ public class BookControllerIntegrationTest {
 
     public static final String API_BOOK_LOAN = "/api/book/loan/";
     public static final String API_BOOK_RETURN = "/api/book/return/";
+    public static final String API_BOOK_LOAN_BATCH = "/api/book/loan/batch";
+    public static final String API_BOOK_RETURN_BATCH = "/api/book/return/batch";
     public static final String API_BOOK = "/api/book/";
     public static final String API_BOOK1 = "/api/book";
+    public static final String API_BOOK_EXPORT = "/api/book/export";
+    public static final String API_BOOK_SEARCH = "/api/book/search";
+    public static final String API_BOOK_BULK = "/api/book/bulk";
+    public static final String API_BOOK_SUGGEST = "/api/book/suggest";
+    public static final String API_HOLD_BOOK = "/api/hold/book/";
+    public static final String API_HOLD = "/api/hold/";
     public static final String API_AUTH_LOGIN = "/api/auth/login";
+    public static final String CBOR_VALUE = "application/cbor";
     @Value("${library.app.testUser}")
     private String testUser;
     @Value("${library.app.testUserName}")
@@ -57,6 +80,12 @@ public class BookControllerIntegrationTest {
     @Autowired
     private CustomerRepository customerRepository;
 
+    @Autowired
+    private LoanRepository loanRepository;
+
+    @Autowired
+    private HoldRepository holdRepository;
+
     @Autowired
     private AuthController authController;
 
@@ -74,6 +103,8 @@ public class BookControllerIntegrationTest {
 
     @After
     public void tearDown() {
+        holdRepository.deleteAll();
+        loanRepository.deleteAll();
         bookRepository.deleteAll();
     }
 
@@ -105,6 +136,77 @@ public class BookControllerIntegrationTest {
         assertThat(response.getBody().prettyPrint()).contains(savedBook.getTitle(), savedBook.getAuthor(), savedBook.getId().toString());
     }
 
+    @Test
+    public void getBooksAsCbor() throws Exception {
+        Book book = Book.builder().title("cbor").author("author").build();
+        bookRepository.save(book);
+
+        Response response = given().basePath(API_BOOK1)
+                .header("Authorization", "Bearer " + token)
+                .header("Cookie", "jwt-cookie=" + token)
+                .accept(CBOR_VALUE)
+                .when().get();
+        assertThat(response.getStatusCode()).isEqualTo(200);
+        assertThat(response.getContentType()).startsWith(CBOR_VALUE);
+        BookDTO[] books = new CBORMapper().readValue(response.asByteArray(), BookDTO[].class);
+        assertThat(books).extracting(BookDTO::getTitle).contains("cbor");
+    }
+
+    @Test
+    public void getBookNotModified() {
+        Book book = Book.builder().title("title").author("author").build();
+        Book savedBook = bookRepository.save(book);
+
+        Response response = given().basePath(API_BOOK + savedBook.getId())
+                .header("Authorization", "Bearer " + token)
+                .header("Cookie", "jwt-cookie=" + token)
+                .when().get();
+        assertThat(response.getStatusCode()).isEqualTo(200);
+        String etag = response.getHeader("ETag");
+        assertThat(etag).isNotBlank();
+
+        Response notModified = given().basePath(API_BOOK + savedBook.getId())
+                .header("Authorization", "Bearer " + token)
+                .header("Cookie", "jwt-cookie=" + token)
+                .header("If-None-Match", etag)
+                .when().get();
+        assertThat(notModified.getStatusCode()).isEqualTo(304);
+        assertThat(notModified.getBody().asString()).isEmpty();
+    }
+
+    @Test
+    public void getBooksNotModifiedUntilCatalogChanges() throws Exception {
+        Response response = given().basePath(API_BOOK1)
+                .header("Authorization", "Bearer " + token)
+                .header("Cookie", "jwt-cookie=" + token)
+                .when().get();
+        assertThat(response.getStatusCode()).isEqualTo(200);
+        String etag = response.getHeader("ETag");
+        assertThat(etag).isNotBlank();
+
+        Response notModified = given().basePath(API_BOOK1)
+                .header("Authorization", "Bearer " + token)
+                .header("Cookie", "jwt-cookie=" + token)
+                .header("If-None-Match", etag)
+                .when().get();
+        assertThat(notModified.getStatusCode()).isEqualTo(304);
+
+        given().basePath(API_BOOK1)
+                .header("Authorization", "Bearer " + token)
+                .header("Cookie", "jwt-cookie=" + token)
+                .contentType(ContentType.JSON)
+                .body(objectMapper.writeValueAsString(BookDTO.builder().title("etag").author("author").build()))
+                .when().post();
+
+        Response modified = given().basePath(API_BOOK1)
+                .header("Authorization", "Bearer " + token)
+                .header("Cookie", "jwt-cookie=" + token)
+                .header("If-None-Match", etag)
+                .when().get();
+        assertThat(modified.getStatusCode()).isEqualTo(200);
+        assertThat(modified.getHeader("ETag")).isNotEqualTo(etag);
+    }
+
     @Test
     public void getBooks() {
         Book book = Book.builder().title("title").author("author").build();
@@ -119,6 +221,135 @@ public class BookControllerIntegrationTest {
         assertThat(response.getBody().prettyPrint()).contains(book.getTitle(), book.getAuthor());
     }
 
+    @Test
+    public void getBooksPage() {
+        Book first = bookRepository.save(Book.builder().title("first").author("author").build());
+        Book second = bookRepository.save(Book.builder().title("second").author("author").build());
+        Book third = bookRepository.save(Book.builder().title("third").author("author").build());
+
+        Response response = given().basePath(API_BOOK1)
+                .queryParam("afterId", first.getId() - 1)
+                .queryParam("limit", 2)
+                .header("Authorization", "Bearer " + token)
+                .header("Cookie", "jwt-cookie=" + token)
+                .when().get();
+        assertThat(response.getStatusCode()).isEqualTo(200);
+        assertThat(response.getHeader(NEXT_CURSOR_HEADER)).isEqualTo(second.getId().toString());
+        assertThat(response.getBody().prettyPrint()).contains(first.getTitle(), second.getTitle()).doesNotContain(third.getTitle());
+
+        Response nextResponse = given().basePath(API_BOOK1)
+                .queryParam("afterId", response.getHeader(NEXT_CURSOR_HEADER))
+                .queryParam("limit", 2)
+                .header("Authorization", "Bearer " + token)
+                .header("Cookie", "jwt-cookie=" + token)
+                .when().get();
+        assertThat(nextResponse.getStatusCode()).isEqualTo(200);
+        assertThat(nextResponse.getHeader(NEXT_CURSOR_HEADER)).isNull();
+        assertThat(nextResponse.getBody().prettyPrint()).contains(third.getTitle()).doesNotContain(first.getTitle());
+    }
+
+    @Test
+    public void searchBooks() throws Exception {
+        BookDTO book = BookDTO.builder().title("Searchable Title").author("Someone").build();
+        given().basePath(API_BOOK1)
+                .header("Authorization", "Bearer " + token)
+                .header("Cookie", "jwt-cookie=" + token)
+                .contentType(ContentType.JSON)
+                .body(objectMapper.writeValueAsString(book))
+                .when().post();
+
+        Response response = given().basePath(API_BOOK_SEARCH)
+                .queryParam("q", "searchable")
+                .header("Authorization", "Bearer " + token)
+                .header("Cookie", "jwt-cookie=" + token)
+                .when().get();
+        assertThat(response.getStatusCode()).isEqualTo(200);
+        assertThat(response.getBody().prettyPrint()).contains(book.getTitle(), book.getAuthor());
+    }
+
+    @Test
+    public void bulkImportBooks() throws Exception {
+        Book existing = bookRepository.save(Book.builder().title("bulk1").author("author").build());
+        List<BookDTO> books = List.of(
+                BookDTO.builder().title("bulk1").author("author").build(),
+                BookDTO.builder().title("bulk2").author("author").build(),
+                BookDTO.builder().title("bulk2").author("author").numberOfCopies(2).build());
+
+        Response response = given().basePath(API_BOOK_BULK)
+                .header("Authorization", "Bearer " + token)
+                .header("Cookie", "jwt-cookie=" + token)
+                .contentType(ContentType.JSON)
+                .body(objectMapper.writeValueAsString(books))
+                .when().post();
+        assertThat(response.getStatusCode()).isEqualTo(200);
+        BulkImportResultDTO result = objectMapper.readValue(response.getBody().asString(), BulkImportResultDTO.class);
+        assertThat(result.getReceived()).isEqualTo(3);
+        assertThat(result.getInserted()).isEqualTo(1);
+        assertThat(result.getMerged()).isEqualTo(2);
+        assertThat(bookRepository.findById(existing.getId()).get().getNumberOfCopies()).isEqualTo(2);
+        assertThat(bookRepository.findBookDTOByTitleAndAuthor("bulk2", "author").get().getNumberOfCopies()).isEqualTo(3);
+    }
+
+    @Test
+    public void bulkImportMalformedBooks() {
+        for (String body : List.of("{\"title\": \"bulk3\", \"author\": \"author\"}",
+                "[{\"title\": \"bulk3\", \"author\": \"author\"}, 42]",
+                "[{\"title\": \"bulk3\", \"author\": ")) {
+            Response response = given().basePath(API_BOOK_BULK)
+                    .header("Authorization", "Bearer " + token)
+                    .header("Cookie", "jwt-cookie=" + token)
+                    .contentType(ContentType.JSON)
+                    .body(body)
+                    .when().post();
+            assertThat(response.getStatusCode()).isEqualTo(400);
+            assertThat(response.getBody().prettyPrint()).contains(MALFORMED_BULK_IMPORT_EXCEPTION);
+        }
+        assertThat(bookRepository.findBookDTOByTitleAndAuthor("bulk3", "author")).isEmpty();
+    }
+
+    @Test
+    public void bulkImportMalformedAfterFullBatch() {
+        StringBuilder body = new StringBuilder("[");
+        for (int i = 0; i < BULK_IMPORT_BATCH_SIZE; i++) {
+            body.append("{\"title\": \"rolledback").append(i).append("\", \"author\": \"author\"},");
+        }
+        body.append("42]");
+        Response response = given().basePath(API_BOOK_BULK)
+                .header("Authorization", "Bearer " + token)
+                .header("Cookie", "jwt-cookie=" + token)
+                .contentType(ContentType.JSON)
+                .body(body.toString())
+                .when().post();
+        assertThat(response.getStatusCode()).isEqualTo(400);
+        assertThat(bookRepository.findBookDTOByTitleAndAuthor("rolledback0", "author")).isEmpty();
+
+        Response suggestions = given().basePath(API_BOOK_SUGGEST)
+                .queryParam("prefix", "rolledback")
+                .header("Authorization", "Bearer " + token)
+                .header("Cookie", "jwt-cookie=" + token)
+                .when().get();
+        assertThat(suggestions.getStatusCode()).isEqualTo(200);
+        assertThat(suggestions.getBody().asString()).doesNotContain("rolledback");
+    }
+
+    @Test
+    public void exportBooks() {
+        bookRepository.save(Book.builder().title("exported1").author("author").build());
+        bookRepository.save(Book.builder().title("exported2").author("author").build());
+
+        Response response = given().basePath(API_BOOK_EXPORT)
+                .header("Authorization", "Bearer " + token)
+                .header("Cookie", "jwt-cookie=" + token)
+                .when().get();
+        assertThat(response.getStatusCode()).isEqualTo(200);
+        assertThat(response.getContentType()).startsWith(NDJSON_VALUE);
+        String body = response.getBody().asString();
+        assertThat(body).endsWith("\n");
+        assertThat(body.split("\n"))
+                .anyMatch(line -> line.contains("exported1"))
+                .anyMatch(line -> line.contains("exported2"));
+    }
+
     @Test
     public void createBook() throws Exception {
         BookDTO book = BookDTO.builder().title("title2").author("author").build();
@@ -134,6 +365,39 @@ public class BookControllerIntegrationTest {
         assertThat(response.getBody().prettyPrint()).contains(book.getTitle(), book.getAuthor());
     }
 
+    @Test
+    public void createDuplicateBook() throws Exception {
+        BookDTO book = BookDTO.builder().title("duplicate").author("author").build();
+
+        for (int copies = 1; copies <= 2; copies++) {
+            Response response = given().basePath(API_BOOK1)
+                    .header("Authorization", "Bearer " + token)
+                    .header("Cookie", "jwt-cookie=" + token)
+                    .contentType(ContentType.JSON)
+                    .body(objectMapper.writeValueAsString(book))
+                    .when().post();
+            assertThat(response.getStatusCode()).isEqualTo(200);
+            assertThat(response.jsonPath().getInt("numberOfCopies")).isEqualTo(copies);
+        }
+        assertThat(bookRepository.findBookDTOByTitleAndAuthor("duplicate", "author")).isPresent();
+    }
+
+    @Test
+    public void createDuplicateBookWithCopies() throws Exception {
+        BookDTO book = BookDTO.builder().title("restocked in bulk").author("author").numberOfCopies(3).build();
+
+        for (int copies = 3; copies <= 6; copies += 3) {
+            Response response = given().basePath(API_BOOK1)
+                    .header("Authorization", "Bearer " + token)
+                    .header("Cookie", "jwt-cookie=" + token)
+                    .contentType(ContentType.JSON)
+                    .body(objectMapper.writeValueAsString(book))
+                    .when().post();
+            assertThat(response.getStatusCode()).isEqualTo(200);
+            assertThat(response.jsonPath().getInt("numberOfCopies")).isEqualTo(copies);
+        }
+    }
+
     @Test
     public void updateBook() throws Exception {
         Book book = Book.builder().title("title2").author("author").build();
@@ -153,6 +417,33 @@ public class BookControllerIntegrationTest {
         assertThat(response.getBody().prettyPrint()).contains(bookToBeUpdated.getTitle(), bookToBeUpdated.getAuthor());
     }
 
+    @Test
+    public void updateBookWithStaleVersion() throws Exception {
+        Book book = bookRepository.save(Book.builder().title("title2").author("author").build());
+        BookDTO bookToBeUpdated = new BookDTO();
+        BeanUtils.copyProperties(book, bookToBeUpdated);
+        bookToBeUpdated.setAuthor("author2");
+
+        Response first = given().basePath(API_BOOK + bookToBeUpdated.getId())
+                .header("Authorization", "Bearer " + token)
+                .header("Cookie", "jwt-cookie=" + token)
+                .contentType(ContentType.JSON)
+                .body(objectMapper.writeValueAsString(bookToBeUpdated))
+                .when().put();
+        assertThat(first.getStatusCode()).isEqualTo(200);
+        assertThat(first.jsonPath().getLong("version")).isEqualTo(book.getVersion() + 1);
+
+        bookToBeUpdated.setAuthor("author3");
+        Response stale = given().basePath(API_BOOK + bookToBeUpdated.getId())
+                .header("Authorization", "Bearer " + token)
+                .header("Cookie", "jwt-cookie=" + token)
+                .contentType(ContentType.JSON)
+                .body(objectMapper.writeValueAsString(bookToBeUpdated))
+                .when().put();
+        assertThat(stale.getStatusCode()).isEqualTo(409);
+        assertThat(bookRepository.findById(book.getId()).get().getAuthor()).isEqualTo("author2");
+    }
+
     @Test
     public void deleteBook() {
         Book book = Book.builder().title("title2").author("author").build();
@@ -166,6 +457,26 @@ public class BookControllerIntegrationTest {
         assertThat(response.getStatusCode()).isEqualTo(200);
     }
 
+    @Test
+    public void deleteLoanedBook() {
+        Book book = Book.builder().title("loaned").author("author").build();
+        Book updateBook = bookRepository.save(book);
+
+        Response loan = given().basePath(API_BOOK_LOAN + updateBook.getId())
+                .header("Authorization", "Bearer " + token)
+                .header("Cookie", "jwt-cookie=" + token)
+                .when().get();
+        assertThat(loan.getStatusCode()).isEqualTo(200);
+
+        Response response = given().basePath(API_BOOK + updateBook.getId())
+                .header("Authorization", "Bearer " + token)
+                .header("Cookie", "jwt-cookie=" + token)
+                .when().delete();
+        assertThat(response.getStatusCode()).isEqualTo(409);
+        assertThat(response.getBody().prettyPrint()).contains(RECORD_IN_USE_EXCEPTION);
+        assertThat(bookRepository.existsById(updateBook.getId())).isTrue();
+    }
+
     @Test
     public void loanBook() {
         Book book = Book.builder().title("title2").author("author").build();
@@ -180,6 +491,21 @@ public class BookControllerIntegrationTest {
         assertThat(response.getBody().prettyPrint()).contains(updateBook.getTitle(), updateBook.getAuthor());
     }
 
+    @Test
+    public void loanTakesCopyInDatabase() {
+        Book book = Book.builder().title("ledger").author("author").numberOfCopies(2).build();
+        Book updateBook = bookRepository.save(book);
+
+        Response response = given().basePath(API_BOOK_LOAN + updateBook.getId())
+                .header("Authorization", "Bearer " + token)
+                .header("Cookie", "jwt-cookie=" + token)
+                .when().get();
+        assertThat(response.getStatusCode()).isEqualTo(200);
+        assertThat(response.jsonPath().getInt("numberOfCopies")).isEqualTo(1);
+        assertThat(bookRepository.findBookDTOById(updateBook.getId()).get().getNumberOfCopies()).isEqualTo(1);
+        assertThat(loanRepository.count()).isEqualTo(1);
+    }
+
     @Test
     public void loanUnavailableBook() {
         Book book = Book.builder().title("title2").author("author").build();
@@ -206,12 +532,168 @@ public class BookControllerIntegrationTest {
         Book book = Book.builder().title("title2").author("author").build();
         Book updateBook = bookRepository.save(book);
 
+        Response loan = given().basePath(API_BOOK_LOAN + updateBook.getId())
+                .header("Authorization", "Bearer " + token)
+                .header("Cookie", "jwt-cookie=" + token)
+                .when().get();
+        assertThat(loan.getStatusCode()).isEqualTo(200);
+        assertThat(loan.jsonPath().getInt("numberOfCopies")).isEqualTo(0);
+        assertThat(loanRepository.findAll()).anyMatch(entry -> entry.getReturnedAt() == null);
+
         RequestSpecification req = given().basePath(API_BOOK_RETURN + updateBook.getId())
                 .header("Authorization", "Bearer " + token)
                 .header("Cookie", "jwt-cookie=" + token)
                 .when();
         Response response = req.get();
         assertThat(response.getStatusCode()).isEqualTo(200);
+        assertThat(response.jsonPath().getInt("numberOfCopies")).isEqualTo(1);
+        assertThat(loanRepository.findAll()).allMatch(entry -> entry.getReturnedAt() != null);
+    }
+
+    @Test
+    public void returnedCopyGoesToHold() {
+        Book book = Book.builder().title("title2").author("author").build();
+        Book updateBook = bookRepository.save(book);
+
+        Response loan = given().basePath(API_BOOK_LOAN + updateBook.getId())
+                .header("Authorization", "Bearer " + token)
+                .header("Cookie", "jwt-cookie=" + token)
+                .when().get();
+        assertThat(loan.getStatusCode()).isEqualTo(200);
+
+        Response hold = given().basePath(API_HOLD_BOOK + updateBook.getId())
+                .header("Authorization", "Bearer " + token)
+                .header("Cookie", "jwt-cookie=" + token)
+                .when().post();
+        assertThat(hold.getStatusCode()).isEqualTo(201);
+        assertThat(hold.jsonPath().getString("status")).isEqualTo("WAITING");
+        assertThat(hold.jsonPath().getLong("position")).isEqualTo(1L);
+        long holdId = hold.jsonPath().getLong("id");
+
+        Response returned = given().basePath(API_BOOK_RETURN + updateBook.getId())
+                .header("Authorization", "Bearer " + token)
+                .header("Cookie", "jwt-cookie=" + token)
+                .when().get();
+        assertThat(returned.getStatusCode()).isEqualTo(200);
+        assertThat(returned.jsonPath().getInt("numberOfCopies")).isEqualTo(0);
+
+        Response status = given().basePath(API_HOLD + holdId)
+                .header("Authorization", "Bearer " + token)
+                .header("Cookie", "jwt-cookie=" + token)
+                .when().get();
+        assertThat(status.getStatusCode()).isEqualTo(200);
+        assertThat(status.jsonPath().getString("status")).isEqualTo("FULFILLED");
+        assertThat(loanRepository.findAll()).filteredOn(entry -> entry.getReturnedAt() == null).hasSize(1);
+    }
+
+    @Test
+    public void addedCopyGoesToHold() throws Exception {
+        Book book = Book.builder().title("restocked").author("author").build();
+        Book updateBook = bookRepository.save(book);
+
+        Response earlyHold = given().basePath(API_HOLD_BOOK + updateBook.getId())
+                .header("Authorization", "Bearer " + token)
+                .header("Cookie", "jwt-cookie=" + token)
+                .when().post();
+        assertThat(earlyHold.getStatusCode()).isEqualTo(409);
+
+        Response loan = given().basePath(API_BOOK_LOAN + updateBook.getId())
+                .header("Authorization", "Bearer " + token)
+                .header("Cookie", "jwt-cookie=" + token)
+                .when().get();
+        assertThat(loan.getStatusCode()).isEqualTo(200);
+
+        Response hold = given().basePath(API_HOLD_BOOK + updateBook.getId())
+                .header("Authorization", "Bearer " + token)
+                .header("Cookie", "jwt-cookie=" + token)
+                .when().post();
+        assertThat(hold.getStatusCode()).isEqualTo(201);
+        long holdId = hold.jsonPath().getLong("id");
+
+        Response added = given().basePath(API_BOOK1)
+                .header("Authorization", "Bearer " + token)
+                .header("Cookie", "jwt-cookie=" + token)
+                .contentType(ContentType.JSON)
+                .body(objectMapper.writeValueAsString(BookDTO.builder().title("restocked").author("author").build()))
+                .when().post();
+        assertThat(added.getStatusCode()).isEqualTo(200);
+        assertThat(added.jsonPath().getInt("numberOfCopies")).isEqualTo(0);
+
+        Response status = given().basePath(API_HOLD + holdId)
+                .header("Authorization", "Bearer " + token)
+                .header("Cookie", "jwt-cookie=" + token)
+                .when().get();
+        assertThat(status.jsonPath().getString("status")).isEqualTo("FULFILLED");
+        assertThat(loanRepository.findAll()).filteredOn(entry -> entry.getReturnedAt() == null).hasSize(2);
+    }
+
+    @Test
+    public void loanReplayedWithIdempotencyKey() {
+        Book book = Book.builder().title("idempotent").author("author").numberOfCopies(2).build();
+        Book updateBook = bookRepository.save(book);
+
+        Response first = given().basePath(API_BOOK_LOAN + updateBook.getId())
+                .header("Authorization", "Bearer " + token)
+                .header("Cookie", "jwt-cookie=" + token)
+                .header(IDEMPOTENCY_KEY_HEADER, "desk-1-scan-1")
+                .when().post();
+        assertThat(first.getStatusCode()).isEqualTo(200);
+        assertThat(first.getHeader(IDEMPOTENT_REPLAYED_HEADER)).isEqualTo("false");
+        assertThat(first.jsonPath().getInt("numberOfCopies")).isEqualTo(1);
+
+        Response replay = given().basePath(API_BOOK_LOAN + updateBook.getId())
+                .header("Authorization", "Bearer " + token)
+                .header("Cookie", "jwt-cookie=" + token)
+                .header(IDEMPOTENCY_KEY_HEADER, "desk-1-scan-1")
+                .when().post();
+        assertThat(replay.getStatusCode()).isEqualTo(200);
+        assertThat(replay.getHeader(IDEMPOTENT_REPLAYED_HEADER)).isEqualTo("true");
+        assertThat(replay.jsonPath().getInt("numberOfCopies")).isEqualTo(1);
+        assertThat(bookRepository.findById(updateBook.getId()).get().getNumberOfCopies()).isEqualTo(1);
+        assertThat(loanRepository.count()).isEqualTo(1);
+    }
+
+    @Test
+    public void loanAndReturnBatch() throws Exception {
+        Book available = bookRepository.save(Book.builder().title("batch1").author("author").build());
+        Book unavailable = bookRepository.save(Book.builder().title("batch2").author("author").numberOfCopies(0).build());
+        String bookIds = objectMapper.writeValueAsString(List.of(unavailable.getId(), available.getId()));
+
+        Response loaned = given().basePath(API_BOOK_LOAN_BATCH)
+                .header("Authorization", "Bearer " + token)
+                .header("Cookie", "jwt-cookie=" + token)
+                .contentType(ContentType.JSON)
+                .body(bookIds)
+                .when().post();
+        assertThat(loaned.getStatusCode()).isEqualTo(200);
+        assertThat(loaned.jsonPath().getList("success", Boolean.class)).containsExactly(false, true);
+        assertThat(loaned.jsonPath().getString("[0].error")).isEqualTo(BOOK_COPIES_NOT_FOUND_EXCEPTION);
+        assertThat(loaned.jsonPath().getInt("[1].numberOfCopies")).isEqualTo(0);
+        assertThat(loanRepository.count()).isEqualTo(1);
+
+        Response returned = given().basePath(API_BOOK_RETURN_BATCH)
+                .header("Authorization", "Bearer " + token)
+                .header("Cookie", "jwt-cookie=" + token)
+                .contentType(ContentType.JSON)
+                .body(bookIds)
+                .when().post();
+        assertThat(returned.getStatusCode()).isEqualTo(200);
+        assertThat(returned.jsonPath().getList("success", Boolean.class)).containsExactly(false, true);
+        assertThat(returned.jsonPath().getString("[0].error")).isEqualTo(LOAN_NOT_FOUND_EXCEPTION);
+        assertThat(returned.jsonPath().getInt("[1].numberOfCopies")).isEqualTo(1);
+    }
+
+    @Test
+    public void returnBookWithoutLoan() {
+        Book book = Book.builder().title("title2").author("author").build();
+        Book updateBook = bookRepository.save(book);
+
+        Response response = given().basePath(API_BOOK_RETURN + updateBook.getId())
+                .header("Authorization", "Bearer " + token)
+                .header("Cookie", "jwt-cookie=" + token)
+                .when().get();
+        assertThat(response.getStatusCode()).isEqualTo(404);
+        assertThat(response.getBody().prettyPrint()).contains(LOAN_NOT_FOUND_EXCEPTION);
     }
 
 }
@@ -27,6 +27,7 @@ import org.springframework.test.context.junit4.SpringRunner;
 
 import java.util.Optional;
 
+import static com.online.library.utils.Constants.DUPLICATE_EMAIL_EXCEPTION;
 import static io.restassured.RestAssured.given;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.Assert.assertTrue;
@@ -38,6 +39,7 @@ import static org.junit.Assert.assertTrue;
 public class CustomerControllerIntegrationTest {
 
     public static final String API_AUTH_LOGIN = "/api/auth/login";
+    public static final String API_AUTH_REGISTER = "/api/auth/register";
     public static final String API_CUSTOMER = "/api/customer/";
     public static final String API_CUSTOMER1 = "/api/customer";
     @Value("${library.app.testUser}")
@@ -132,6 +134,27 @@ public class CustomerControllerIntegrationTest {
         assertThat(response.getBody().prettyPrint()).contains(customerDTO.getName(), customerDTO.getEmail());
     }
 
+    @Test
+    public void updateCustomerToTakenEmail() throws Exception {
+        String takenEmail = "taken@gmail.com";
+        authController.register(new RegisterRequestDTO(takenEmail, testuserName, testUserPassword));
+        Optional<Customer> customer = customerRepository.findByEmail(testUser);
+        CustomerDTO customerDTO = new CustomerDTO();
+        BeanUtils.copyProperties(customer.get(), customerDTO);
+        customerDTO.setVersion(null);
+        customerDTO.setEmail(takenEmail);
+
+        Response response = given().basePath(API_CUSTOMER + customerDTO.getId())
+                .contentType(ContentType.JSON)
+                .header("Authorization", "Bearer " + token)
+                .header("Cookie", "jwt-cookie=" + token)
+                .body(objectMapper.writeValueAsString(customerDTO))
+                .when().put();
+        assertThat(response.getStatusCode()).isEqualTo(409);
+        assertThat(response.getBody().prettyPrint()).contains(DUPLICATE_EMAIL_EXCEPTION);
+        customerRepository.findByEmail(takenEmail).ifPresent(customerRepository::delete);
+    }
+
     @Test
     public void deleteCustomer() {
         String testEmail = "test2@gmail.com";
@@ -148,4 +171,13 @@ public class CustomerControllerIntegrationTest {
         assertThat(response.getStatusCode()).isEqualTo(200);
     }
 
+    @Test
+    public void registerDuplicateCustomer() {
+        RegisterRequestDTO request = new RegisterRequestDTO(testUser, testuserName, testUserPassword);
+
+        Response response = given().basePath(API_AUTH_REGISTER).contentType(ContentType.JSON)
+                .body(request).when().post();
+        assertThat(response.getStatusCode()).isEqualTo(409);
+    }
+
 }
@@ -0,0 +1,86 @@
+package com.online.library;
+
+import com.online.library.controller.AuthController;
+import com.online.library.model.dto.LoginRequestDTO;
+import com.online.library.model.dto.RegisterRequestDTO;
+import com.online.library.repository.CustomerRepository;
+import io.restassured.RestAssured;
+import io.restassured.http.ContentType;
+import io.restassured.response.Response;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import static io.restassured.RestAssured.given;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@RunWith(SpringRunner.class)
+@ActiveProfiles(value = "test")
+@SpringBootTest(classes = OnlineLibraryApplication.class, webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@EnableAutoConfiguration
+public class StatsControllerIntegrationTest {
+
+    public static final String API_AUTH_LOGIN = "/api/auth/login";
+    public static final String API_STATS = "/api/stats";
+    @Value("${library.app.testUser}")
+    private String testUser;
+    @Value("${library.app.testAdmin}")
+    private String testAdmin;
+    @Value("${library.app.testUserName}")
+    private String testuserName;
+    @Value("${library.app.testUserPassword}")
+    private String testUserPassword;
+
+    @LocalServerPort
+    int port;
+
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    @Autowired
+    private AuthController authController;
+
+    @Before
+    public void init() {
+        RestAssured.baseURI = "http://localhost";
+        RestAssured.port = port;
+    }
+
+    private String generateToken(String email) {
+        if (!customerRepository.existsByEmail(email)) {
+            authController.register(new RegisterRequestDTO(email, testuserName, testUserPassword));
+        }
+        LoginRequestDTO request = LoginRequestDTO.builder().username(email).password(testUserPassword).build();
+        Response response = given().basePath(API_AUTH_LOGIN).contentType(ContentType.JSON)
+                .body(request).when().post();
+        return response.getCookie("jwt-cookie");
+    }
+
+    @Test
+    public void getStatsAsCustomer() {
+        String token = generateToken(testUser);
+        Response response = given().basePath(API_STATS)
+                .header("Authorization", "Bearer " + token)
+                .header("Cookie", "jwt-cookie=" + token)
+                .when().get();
+        assertThat(response.getStatusCode()).isEqualTo(403);
+    }
+
+    @Test
+    public void getStatsAsAdmin() {
+        String token = generateToken(testAdmin);
+        Response response = given().basePath(API_STATS)
+                .header("Authorization", "Bearer " + token)
+                .header("Cookie", "jwt-cookie=" + token)
+                .when().get();
+        assertThat(response.getStatusCode()).isEqualTo(200);
+        assertThat(response.jsonPath().getMap("bookCache")).containsKey("hitRatio");
+    }
+}
@@ -0,0 +1,84 @@
+package com.online.library.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
+import com.online.library.model.dto.BookDTO;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serialises a full page of books as JSON, CBOR and Smile. The payload size of each format
+ * is printed during setup, the benchmark itself measures serialisation time.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EncodingBenchmark {
+
+    @Param({"json", "cbor", "smile"})
+    private String format;
+
+    @Param("500")
+    private int rows;
+
+    private ObjectMapper objectMapper;
+
+    private List<BookDTO> books;
+
+    @Setup
+    public void setUp() throws IOException {
+        switch (format) {
+            case "cbor":
+                objectMapper = new CBORMapper();
+                break;
+            case "smile":
+                objectMapper = new SmileMapper();
+                break;
+            default:
+                objectMapper = new ObjectMapper();
+        }
+        books = new ArrayList<>(rows);
+        for (long id = 1; id <= rows; id++) {
+            books.add(BookDTO.builder()
+                    .id(id)
+                    .title("Title " + id)
+                    .author("Author " + id % 100)
+                    .numberOfCopies((int) (id % 7) + 1)
+                    .version(id % 3)
+                    .build());
+        }
+        System.out.printf("%n%s payload for %d books: %d bytes%n", format, rows, serialize().length);
+    }
+
+    @Benchmark
+    public byte[] serialize() throws IOException {
+        return objectMapper.writeValueAsBytes(books);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(EncodingBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
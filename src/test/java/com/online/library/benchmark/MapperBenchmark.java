@@ -0,0 +1,82 @@
+package com.online.library.benchmark;
+
+import com.online.library.model.Book;
+import com.online.library.model.dto.BookDTO;
+import com.online.library.model.mapper.BookMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.beans.BeanUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares converting a page of books with reflective BeanUtils against the generated
+ * BookMapper. Run it from the IDE or with
+ * {@code mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.online.library.benchmark.MapperBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MapperBenchmark {
+
+    @Param("100000")
+    private int rows;
+
+    private List<Book> books;
+
+    @Setup
+    public void setUp() {
+        books = new ArrayList<>(rows);
+        for (long id = 1; id <= rows; id++) {
+            books.add(Book.builder()
+                    .id(id)
+                    .title("Title " + id)
+                    .author("Author " + id % 1000)
+                    .numberOfCopies((int) (id % 7) + 1)
+                    .build());
+        }
+    }
+
+    @Benchmark
+    public List<BookDTO> beanUtils() {
+        List<BookDTO> bookDTOS = new ArrayList<>(books.size());
+        for (Book book : books) {
+            BookDTO bookDTO = new BookDTO();
+            BeanUtils.copyProperties(book, bookDTO);
+            bookDTOS.add(bookDTO);
+        }
+        return bookDTOS;
+    }
+
+    @Benchmark
+    public List<BookDTO> mapStruct() {
+        List<BookDTO> bookDTOS = new ArrayList<>(books.size());
+        for (Book book : books) {
+            bookDTOS.add(BookMapper.INSTANCE.toBookDTO(book));
+        }
+        return bookDTOS;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(MapperBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
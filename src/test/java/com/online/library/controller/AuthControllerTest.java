@@ -0,0 +1,64 @@
+package com.online.library.controller;
+
+import com.online.library.exception.CustomExceptionHandler;
+import com.online.library.exception.ServiceUnavailableException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.MediaType;
+import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.InternalAuthenticationServiceException;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import static com.online.library.utils.Constants.PASSWORD_HASHING_BUSY_EXCEPTION;
+import static org.hamcrest.Matchers.containsString;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.openMocks;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@RunWith(SpringJUnit4ClassRunner.class)
+public class AuthControllerTest {
+
+    @InjectMocks
+    private final AuthController authController = new AuthController();
+
+    @MockBean
+    private AuthenticationManager authenticationManager;
+
+    private AutoCloseable mocks;
+
+    private MockMvc mockMvc;
+
+    @Before
+    public void before() {
+        mocks = openMocks(this);
+        mockMvc = MockMvcBuilders.standaloneSetup(authController)
+                .setControllerAdvice(new CustomExceptionHandler())
+                .build();
+    }
+
+    @After
+    public void after() throws Exception {
+        mocks.close();
+    }
+
+    @Test
+    public void whenPasswordHashingBusyExpectServiceUnavailable() throws Exception {
+        when(authenticationManager.authenticate(any())).thenThrow(new InternalAuthenticationServiceException(
+                PASSWORD_HASHING_BUSY_EXCEPTION, new ServiceUnavailableException(PASSWORD_HASHING_BUSY_EXCEPTION)));
+
+        mockMvc.perform(post("/api/auth/login")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"username\": \"customer@library.com\", \"password\": \"password\"}"))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(content().string(containsString(PASSWORD_HASHING_BUSY_EXCEPTION)));
+    }
+}
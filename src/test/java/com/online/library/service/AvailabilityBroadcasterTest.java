@@ -0,0 +1,76 @@
+package com.online.library.service;
+
+import com.online.library.model.dto.BookDTO;
+import com.online.library.repository.BookRepository;
+import com.online.library.utils.PopulatedValidBookDTO;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.openMocks;
+
+@RunWith(SpringJUnit4ClassRunner.class)
+public class AvailabilityBroadcasterTest {
+
+    private final BookDTO bookDTO = new PopulatedValidBookDTO();
+
+    @InjectMocks
+    private final AvailabilityBroadcaster availabilityBroadcaster = new AvailabilityBroadcaster(60_000, 30_000, 1, 10);
+
+    @MockBean
+    private BookRepository bookRepository;
+
+    @MockBean
+    private InventoryEngine inventoryEngine;
+
+    private AutoCloseable mocks;
+
+    @Before
+    public void before(){
+        mocks = openMocks(this);
+    }
+
+    @After
+    public void after() throws Exception {
+        availabilityBroadcaster.shutdown();
+        mocks.close();
+    }
+
+    @Test
+    public void whenBookChangedTwiceExpectOneCoalescedRead() {
+        when(bookRepository.findBookDTOsByIdIn(any())).thenReturn(List.of(bookDTO));
+        SseEmitter emitter = availabilityBroadcaster.subscribe(List.of(bookDTO.getId()));
+        assertThat(emitter).isNotNull();
+
+        availabilityBroadcaster.publish(bookDTO.getId());
+        availabilityBroadcaster.publish(bookDTO.getId());
+        availabilityBroadcaster.flush();
+
+        verify(bookRepository, times(2)).findBookDTOsByIdIn(any());
+        assertThat(availabilityBroadcaster.getStats())
+                .containsEntry("subscribers", 1)
+                .containsEntry("flushes", 1L)
+                .containsEntry("coalesced", 1L);
+    }
+
+    @Test
+    public void whenBookNotWatchedExpectNoRead() {
+        availabilityBroadcaster.publish(bookDTO.getId());
+        availabilityBroadcaster.flush();
+
+        verify(bookRepository, times(0)).findBookDTOsByIdIn(any());
+        assertThat(availabilityBroadcaster.getStats()).containsEntry("flushes", 0L);
+    }
+}
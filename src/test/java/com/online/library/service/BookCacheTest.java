@@ -0,0 +1,66 @@
+package com.online.library.service;
+
+import com.online.library.model.dto.BookDTO;
+import com.online.library.utils.PopulatedValidBookDTO;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class BookCacheTest {
+
+    private final BookCache bookCache = new BookCache(100, 60);
+
+    @Test
+    public void whenBookWasLoadedExpectCopy() {
+        BookDTO bookDTO = new PopulatedValidBookDTO();
+        bookCache.get(bookDTO.getId(), id -> bookDTO);
+        bookDTO.setTitle("changed");
+        BookDTO cached = bookCache.get(bookDTO.getId(), id -> null);
+        assertThat(cached).isNotNull();
+        assertThat(cached.getTitle()).isNotEqualTo("changed");
+        cached.setAuthor("changed");
+        assertThat(bookCache.get(bookDTO.getId(), id -> null).getAuthor()).isNotEqualTo("changed");
+    }
+
+    @Test
+    public void whenBookWasEvictedExpectMiss() {
+        BookDTO bookDTO = new PopulatedValidBookDTO();
+        bookCache.get(bookDTO.getId(), id -> bookDTO);
+        bookCache.evict(bookDTO.getId());
+        assertThat(bookCache.get(bookDTO.getId(), id -> null)).isNull();
+        assertThat(bookCache.getStats()).containsEntry("invalidations", 1L).containsEntry("misses", 2L);
+    }
+
+    @Test
+    public void whenEvictedDuringLoadExpectLoadedBookDropped() throws Exception {
+        BookDTO stale = new PopulatedValidBookDTO();
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Thread reader = new Thread(() -> bookCache.get(stale.getId(), id -> {
+            loading.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return stale;
+        }));
+        reader.start();
+        loading.await();
+
+        Thread writer = new Thread(() -> bookCache.evict(stale.getId()));
+        writer.start();
+        while (writer.getState() != Thread.State.BLOCKED && writer.getState() != Thread.State.WAITING) {
+            Thread.sleep(1);
+        }
+        release.countDown();
+        reader.join();
+        writer.join();
+
+        BookDTO fresh = new PopulatedValidBookDTO();
+        fresh.setTitle("fresh");
+        assertThat(bookCache.get(stale.getId(), id -> fresh).getTitle()).isEqualTo("fresh");
+    }
+}
@@ -0,0 +1,50 @@
+package com.online.library.service;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class BookSearchIndexTest {
+
+    private final BookSearchIndex bookSearchIndex = new BookSearchIndex();
+
+    @Test
+    public void whenSearchingIndexedTermExpectRankedResult() {
+        bookSearchIndex.index(1L, "The Hobbit", "J. R. R. Tolkien");
+        bookSearchIndex.index(2L, "The Lord of the Rings", "J. R. R. Tolkien");
+        bookSearchIndex.index(3L, "Dune", "Frank Herbert");
+
+        assertThat(bookSearchIndex.search("tolkien", 10)).containsExactly(1L, 2L);
+        assertThat(bookSearchIndex.search("Lord Tolkien", 10)).containsExactly(2L, 1L);
+        assertThat(bookSearchIndex.search("DUNE", 10)).containsExactly(3L);
+    }
+
+    @Test
+    public void whenBookIsUpdatedExpectOldTermsRemoved() {
+        bookSearchIndex.index(1L, "Dune", "Frank Herbert");
+        bookSearchIndex.index(1L, "Children of Dune", "Frank Herbert");
+
+        assertThat(bookSearchIndex.search("children", 10)).containsExactly(1L);
+        assertThat(bookSearchIndex.search("dune", 10)).containsExactly(1L);
+    }
+
+    @Test
+    public void whenBookIsRemovedExpectNoResult() {
+        bookSearchIndex.index(1L, "Dune", "Frank Herbert");
+        bookSearchIndex.remove(1L);
+
+        List<Long> result = bookSearchIndex.search("dune", 10);
+        assertThat(result).isEmpty();
+        assertThat(bookSearchIndex.getStats().get("terms")).isEqualTo(0);
+    }
+
+    @Test
+    public void whenQueryIsBlankExpectEmpty() {
+        bookSearchIndex.index(1L, "Dune", "Frank Herbert");
+
+        assertThat(bookSearchIndex.search("  ", 10)).isEmpty();
+        assertThat(bookSearchIndex.search(null, 10)).isEmpty();
+    }
+}
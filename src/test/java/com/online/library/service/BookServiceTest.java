@@ -1,24 +1,41 @@
 package com.online.library.service;
 
 import com.online.library.exception.RecordNotFoundException;
+import com.online.library.exception.VersionConflictException;
 import com.online.library.model.Book;
+import com.online.library.model.Loan;
+import com.online.library.model.dto.BatchItemResultDTO;
 import com.online.library.model.dto.BookDTO;
 import com.online.library.repository.BookRepository;
+import com.online.library.repository.CustomerRepository;
+import com.online.library.repository.LoanRepository;
+import com.online.library.utils.Constants;
 import com.online.library.utils.PopulatedValidBook;
 import com.online.library.utils.PopulatedValidBookDTO;
+import com.online.library.utils.PopulatedValidCustomer;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
+import org.mockito.Spy;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 
+import java.time.Instant;
 import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Function;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.startsWith;
 import static org.mockito.Mockito.*;
 import static org.mockito.MockitoAnnotations.initMocks;
 
@@ -35,42 +52,101 @@ public class BookServiceTest {
     @MockBean
     private BookRepository bookRepository;
 
+    @MockBean
+    private BookSearchIndex bookSearchIndex;
+
+    @MockBean
+    private BookSuggestionTrie bookSuggestionTrie;
+
+    @MockBean
+    private LoanRepository loanRepository;
+
+    @MockBean
+    private CustomerRepository customerRepository;
+
+    @MockBean
+    private BookCache bookCache;
+
+    @MockBean
+    private CatalogVersion catalogVersion;
+
+    @MockBean
+    private InventoryEngine inventoryEngine;
+
+    @MockBean
+    private HoldService holdService;
+
+    @MockBean
+    private JdbcTemplate jdbcTemplate;
+
+    @MockBean
+    private AvailabilityBroadcaster availabilityBroadcaster;
+
+    @Spy
+    private OptimisticRetry optimisticRetry = new OptimisticRetry(3, 0);
+
     @Before
     public void before(){
         initMocks(this);
     }
 
+    @SuppressWarnings("unchecked")
+    private void loadThroughCache() {
+        when(bookCache.get(any(), any())).thenAnswer(invocation ->
+                ((Function<Long, BookDTO>) invocation.getArgument(1)).apply(invocation.getArgument(0)));
+    }
+
     @Test
     public void whenGettingBookByIdExpectResult() {
-        when(bookRepository.findById(any())).thenReturn(Optional.of(book));
-        BookDTO newBook = bookService.get(book.getId());
-        assertThat(newBook.getTitle()).isEqualTo(book.getTitle());
-        assertThat(newBook.getAuthor()).isEqualTo(book.getAuthor());
-        assertThat(newBook.getId()).isEqualTo(book.getId());
-        verify(bookRepository).findById(book.getId());
+        loadThroughCache();
+        when(bookRepository.findBookDTOById(any())).thenReturn(Optional.of(bookDTO));
+        BookDTO newBook = bookService.get(bookDTO.getId());
+        assertThat(newBook.getTitle()).isEqualTo(bookDTO.getTitle());
+        assertThat(newBook.getAuthor()).isEqualTo(bookDTO.getAuthor());
+        assertThat(newBook.getId()).isEqualTo(bookDTO.getId());
+        verify(bookRepository).findBookDTOById(bookDTO.getId());
+    }
+
+    @Test
+    public void whenGettingCachedBookExpectNoRepositoryLookup() {
+        when(bookCache.get(eq(bookDTO.getId()), any())).thenReturn(bookDTO);
+        BookDTO newBook = bookService.get(bookDTO.getId());
+        assertThat(newBook).isEqualTo(bookDTO);
+        verify(bookRepository, never()).findBookDTOById(any());
     }
 
     @Test(expected = RecordNotFoundException.class)
     public void whenGettingBookByIdExpectNull() {
         Long id = 1L;
-        when(bookRepository.getById(id)).thenReturn(null);
+        loadThroughCache();
+        when(bookRepository.findBookDTOById(id)).thenReturn(Optional.empty());
         bookService.get(id);
     }
 
     @Test
     public void whenGettingBooksExpectResult() {
-        when(bookRepository.findAll()).thenReturn(List.of(book));
-        List<BookDTO> newBooks = bookService.getBooks();
+        when(bookRepository.findBookDTOsAfter(any(), any())).thenReturn(List.of(bookDTO));
+        List<BookDTO> newBooks = bookService.getBooks(0L, 10);
         assertThat(newBooks.size()).isEqualTo(1);
-        assertThat(newBooks.get(0).getId()).isEqualTo(book.getId());
-        assertThat(newBooks.get(0).getTitle()).isEqualTo(book.getTitle());
-        assertThat(newBooks.get(0).getAuthor()).isEqualTo(book.getAuthor());
+        assertThat(newBooks.get(0).getId()).isEqualTo(bookDTO.getId());
+        assertThat(newBooks.get(0).getTitle()).isEqualTo(bookDTO.getTitle());
+        assertThat(newBooks.get(0).getAuthor()).isEqualTo(bookDTO.getAuthor());
+    }
+
+    @Test
+    public void whenGettingBooksWithInventoryEngineExpectLiveCopies() {
+        BookDTO stored = new BookDTO(bookDTO.getId(), bookDTO.getTitle(), bookDTO.getAuthor(), 5, 1L);
+        when(bookRepository.findBookDTOsAfter(any(), any())).thenReturn(List.of(stored));
+        when(inventoryEngine.isEnabled()).thenReturn(true);
+        when(inventoryEngine.available(stored.getId(), 5)).thenReturn(2);
+        List<BookDTO> newBooks = bookService.getBooks(0L, 10);
+        assertThat(newBooks).extracting(BookDTO::getNumberOfCopies).containsExactly(2);
     }
 
     @Test
     public void whenGettingBooksExpectEmpty() {
-        when(bookRepository.findAll()).thenReturn(Collections.emptyList());
-        List<BookDTO> newBooks = bookService.getBooks();
+        when(bookRepository.findBookDTOsAfter(any(), any())).thenReturn(Collections.emptyList());
+        List<BookDTO> newBooks = bookService.getBooks(0L, 10);
         assertThat(newBooks).isEmpty();
     }
 
@@ -84,56 +160,194 @@ public class BookServiceTest {
         assertThat(result.getId()).isEqualTo(book.getId());
     }
 
+    @Test
+    public void whenUpsertExistingBookExpectCopiesAdded() {
+        bookDTO.setNumberOfCopies(3);
+        when(bookRepository.addBookCopies(bookDTO.getTitle(), bookDTO.getAuthor(), 3)).thenReturn(1);
+        when(bookRepository.findBookDTOByTitleAndAuthor(bookDTO.getTitle(), bookDTO.getAuthor()))
+                .thenReturn(Optional.of(bookDTO));
+        BookDTO result = bookService.createOrAddCopy(bookDTO);
+        assertThat(result.getId()).isEqualTo(book.getId());
+        verify(bookRepository, never()).save(any());
+        verify(holdService).assignAddedCopies(book.getId(), 3);
+        verify(bookSearchIndex).index(book.getId(), book.getTitle(), book.getAuthor());
+    }
+
+    @Test
+    public void whenUpsertNewBookExpectInserted() {
+        when(bookRepository.addBookCopies(any(), any(), anyInt())).thenReturn(0);
+        when(bookRepository.findBookDTOByTitleAndAuthor(bookDTO.getTitle(), bookDTO.getAuthor()))
+                .thenReturn(Optional.of(bookDTO));
+        BookDTO result = bookService.createOrAddCopy(bookDTO);
+        assertThat(result.getId()).isEqualTo(book.getId());
+        verify(bookRepository).save(any());
+    }
+
+    @Test
+    public void whenConcurrentInsertFailsExpectCopiesAdded() {
+        when(bookRepository.addBookCopies(any(), any(), anyInt())).thenReturn(0).thenReturn(1);
+        when(bookRepository.save(any())).thenThrow(new DataIntegrityViolationException("duplicate"));
+        when(bookRepository.findBookDTOByTitleAndAuthor(any(), any())).thenReturn(Optional.of(bookDTO));
+        BookDTO result = bookService.createOrAddCopy(bookDTO);
+        assertThat(result.getId()).isEqualTo(book.getId());
+        verify(bookRepository, times(2)).addBookCopies(any(), any(), anyInt());
+    }
+
     @Test
     public void whenUpdateBookExpectResult() {
-        when(bookRepository.existsById(any())).thenReturn(true);
-        when(bookRepository.save(any())).thenReturn(book);
-        when(bookRepository.getById(any())).thenReturn(book);
+        when(bookRepository.findBookDTOById(bookDTO.getId()))
+                .thenReturn(Optional.of(BookDTO.builder().id(bookDTO.getId()).version(3L).build()))
+                .thenReturn(Optional.of(bookDTO));
+        when(bookRepository.updateBookAtVersion(bookDTO.getId(), bookDTO.getTitle(), bookDTO.getAuthor(), 3L))
+                .thenReturn(1);
         BookDTO result = bookService.update(bookDTO);
         assertThat(result.getTitle()).isEqualTo(bookDTO.getTitle());
         assertThat(result.getAuthor()).isEqualTo(bookDTO.getAuthor());
         assertThat(result.getId()).isEqualTo(bookDTO.getId());
+        verify(bookCache).evict(bookDTO.getId());
     }
 
     @Test
     public void whenUpdateBookExpectNull() {
-        when(bookRepository.existsById(any())).thenReturn(false);
+        when(bookRepository.findBookDTOById(any())).thenReturn(Optional.empty());
         BookDTO result = bookService.update(bookDTO);
         assertThat(result).isNull();
+        verify(bookRepository, never()).updateBookAtVersion(any(), any(), any(), any());
+    }
+
+    @Test
+    public void whenUpdateBookRacesAnotherWriteExpectRetry() {
+        when(bookRepository.findBookDTOById(bookDTO.getId()))
+                .thenReturn(Optional.of(BookDTO.builder().id(bookDTO.getId()).version(3L).build()))
+                .thenReturn(Optional.of(BookDTO.builder().id(bookDTO.getId()).version(4L).build()))
+                .thenReturn(Optional.of(bookDTO));
+        when(bookRepository.updateBookAtVersion(bookDTO.getId(), bookDTO.getTitle(), bookDTO.getAuthor(), 3L))
+                .thenReturn(0);
+        when(bookRepository.updateBookAtVersion(bookDTO.getId(), bookDTO.getTitle(), bookDTO.getAuthor(), 4L))
+                .thenReturn(1);
+        when(bookRepository.existsById(bookDTO.getId())).thenReturn(true);
+        BookDTO result = bookService.update(bookDTO);
+        assertThat(result.getId()).isEqualTo(bookDTO.getId());
+        assertThat(optimisticRetry.getStats()).containsKey("book");
+    }
+
+    @Test
+    public void whenUpdateBookWithStaleVersionExpectConflict() {
+        BookDTO stale = BookDTO.builder().id(bookDTO.getId()).title("title").author("author").version(1L).build();
+        when(bookRepository.updateBookAtVersion(stale.getId(), stale.getTitle(), stale.getAuthor(), 1L))
+                .thenReturn(0);
+        when(bookRepository.existsById(stale.getId())).thenReturn(true);
+        assertThatThrownBy(() -> bookService.update(stale))
+                .isInstanceOf(VersionConflictException.class)
+                .hasMessage(Constants.VERSION_CONFLICT_EXCEPTION);
+        verify(bookRepository, times(1)).updateBookAtVersion(any(), any(), any(), any());
+        verify(bookCache, never()).evict(any());
     }
 
     @Test
     public void whenDeleteBookExpectResult() {
         bookService.delete(book.getId());
         verify(bookRepository).deleteById(book.getId());
+        verify(bookSearchIndex).remove(book.getId());
+        verify(bookCache).evict(book.getId());
     }
 
     @Test
-    public void whenIncrementBookCopyExpectResult() {
-        book.setNumberOfCopies(book.getNumberOfCopies()+1);
-        when(bookRepository.findById(bookDTO.getId())).thenReturn(Optional.of(book));
-        doNothing().when(bookRepository).incrementBookCopies(bookDTO.getId());
-        BookDTO result = bookService.addBookCopy(bookDTO);
-        assertThat(result.getTitle()).isEqualTo(bookDTO.getTitle());
-        assertThat(result.getAuthor()).isEqualTo(bookDTO.getAuthor());
-        assertThat(result.getId()).isEqualTo(bookDTO.getId());
-        assertThat(result.getNumberOfCopies()).isGreaterThan(bookDTO.getNumberOfCopies());
-        verify(bookRepository).incrementBookCopies(any());
+    public void whenSearchingBooksExpectIndexOrder() {
+        Book other = new PopulatedValidBook();
+        other.setId(2L);
+        when(bookSearchIndex.search(any(), anyInt())).thenReturn(List.of(2L, 1L));
+        when(bookRepository.findAllById(any())).thenReturn(List.of(book, other));
+        List<BookDTO> result = bookService.search("test", 10);
+        assertThat(result).extracting(BookDTO::getId).containsExactly(2L, 1L);
     }
 
     @Test
     public void whenDecrementBookCopyExpectResult() {
-        Book resultBook = book;
-        resultBook.setNumberOfCopies(book.getNumberOfCopies()-1);
+        BookDTO resultBook = new BookDTO(bookDTO.getId(), bookDTO.getTitle(), bookDTO.getAuthor(),
+                bookDTO.getNumberOfCopies() - 1, bookDTO.getVersion());
+        when(bookRepository.takeBookCopy(bookDTO.getId())).thenReturn(1);
         when(bookRepository.getById(bookDTO.getId())).thenReturn(book);
-        when(bookRepository.findById(bookDTO.getId())).thenReturn(Optional.of(book));
-        doNothing().when(bookRepository).decrementBookCopies(bookDTO.getId());
-        BookDTO result = bookService.loanBook(bookDTO.getId());
+        when(bookRepository.findBookDTOById(bookDTO.getId())).thenReturn(Optional.of(resultBook));
+        when(customerRepository.getById(any())).thenReturn(new PopulatedValidCustomer());
+        BookDTO result = bookService.loanBook(bookDTO.getId(), 1L);
         assertThat(result.getTitle()).isEqualTo(bookDTO.getTitle());
         assertThat(result.getAuthor()).isEqualTo(bookDTO.getAuthor());
         assertThat(result.getId()).isEqualTo(bookDTO.getId());
         assertThat(result.getNumberOfCopies()).isLessThan(bookDTO.getNumberOfCopies());
-        verify(bookRepository).decrementBookCopies(any());
+        ArgumentCaptor<Loan> loan = ArgumentCaptor.forClass(Loan.class);
+        verify(loanRepository).save(loan.capture());
+        assertThat(loan.getValue().getBook()).isSameAs(book);
+        assertThat(loan.getValue().getLoanedAt()).isNotNull();
+        assertThat(loan.getValue().getDueAt()).isNotNull();
+        verify(bookCache).evict(bookDTO.getId());
+        verify(availabilityBroadcaster).publish(bookDTO.getId());
+    }
+
+    @Test
+    public void whenNoCopiesLeftExpectNoLoan() {
+        when(bookRepository.takeBookCopy(bookDTO.getId())).thenReturn(0);
+        when(bookRepository.existsById(bookDTO.getId())).thenReturn(true);
+        assertThatThrownBy(() -> bookService.loanBook(bookDTO.getId(), 1L))
+                .isInstanceOf(RecordNotFoundException.class)
+                .hasMessage(Constants.BOOK_COPIES_NOT_FOUND_EXCEPTION);
+        verify(loanRepository, never()).save(any());
+    }
+
+    @Test
+    public void whenReturningLoanedBookExpectLoanClosed() {
+        Loan loan = Loan.builder().book(book).loanedAt(Instant.now()).build();
+        when(loanRepository.findFirstByBookIdAndCustomerIdAndReturnedAtIsNullOrderByIdAsc(bookDTO.getId(), 1L))
+                .thenReturn(Optional.of(loan));
+        when(bookRepository.putBackBookCopy(bookDTO.getId())).thenReturn(1);
+        when(bookRepository.findBookDTOById(bookDTO.getId())).thenReturn(Optional.of(bookDTO));
+        BookDTO result = bookService.returnBook(bookDTO.getId(), 1L);
+        assertThat(result.getId()).isEqualTo(bookDTO.getId());
+        assertThat(loan.getReturnedAt()).isNotNull();
+        verify(bookCache).evict(bookDTO.getId());
+    }
+
+    @Test
+    public void whenReturningBookOnHoldExpectCopyAssigned() {
+        Loan loan = Loan.builder().book(book).loanedAt(Instant.now()).build();
+        when(loanRepository.findFirstByBookIdAndCustomerIdAndReturnedAtIsNullOrderByIdAsc(bookDTO.getId(), 1L))
+                .thenReturn(Optional.of(loan));
+        when(holdService.assignReturnedCopy(bookDTO.getId())).thenReturn(true);
+        loadThroughCache();
+        when(bookRepository.findBookDTOById(bookDTO.getId())).thenReturn(Optional.of(bookDTO));
+        BookDTO result = bookService.returnBook(bookDTO.getId(), 1L);
+        assertThat(result.getId()).isEqualTo(bookDTO.getId());
+        assertThat(loan.getReturnedAt()).isNotNull();
+        verify(bookRepository, never()).putBackBookCopy(any());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void whenLoaningBatchExpectSortedUpdatesAndPerItemResults() {
+        when(jdbcTemplate.batchUpdate(anyString(), anyList())).thenReturn(new int[]{1, 0});
+        when(bookRepository.findBookDTOsByIdIn(any())).thenReturn(List.of(bookDTO));
+        List<BatchItemResultDTO> results = bookService.loanBooks(List.of(99L, bookDTO.getId()), 1L);
+
+        ArgumentCaptor<List<Object[]>> batch = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate).batchUpdate(startsWith("UPDATE books"), batch.capture());
+        assertThat(batch.getValue()).extracting(row -> row[0]).containsExactly(bookDTO.getId(), 99L);
+        verify(jdbcTemplate).batchUpdate(startsWith("INSERT INTO loans"), anyList());
+
+        assertThat(results).hasSize(2);
+        assertThat(results.get(0).getBookId()).isEqualTo(99L);
+        assertThat(results.get(0).isSuccess()).isFalse();
+        assertThat(results.get(0).getError()).isEqualTo(Constants.RECORD_NOT_FOUND_EXCEPTION);
+        assertThat(results.get(1).getBookId()).isEqualTo(bookDTO.getId());
+        assertThat(results.get(1).isSuccess()).isTrue();
+        verify(bookCache).evict(bookDTO.getId());
+    }
+
+    @Test
+    public void whenReturningBookWithoutLoanExpectException() {
+        assertThatThrownBy(() -> bookService.returnBook(bookDTO.getId(), 1L))
+                .isInstanceOf(RecordNotFoundException.class)
+                .hasMessage(Constants.LOAN_NOT_FOUND_EXCEPTION);
+        verify(bookRepository, never()).putBackBookCopy(any());
     }
 
 }
@@ -0,0 +1,45 @@
+package com.online.library.service;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class BookSuggestionTrieTest {
+
+    private final BookSuggestionTrie bookSuggestionTrie = new BookSuggestionTrie(2);
+
+    @Test
+    public void whenPrefixMatchesExpectMostFrequentFirst() {
+        bookSuggestionTrie.index(1L, "Dune", "Frank Herbert");
+        bookSuggestionTrie.index(2L, "Dune Messiah", "Frank Herbert");
+        bookSuggestionTrie.index(3L, "Fahrenheit 451", "Ray Bradbury");
+
+        assertThat(bookSuggestionTrie.suggest("f", 10)).containsExactly("Frank Herbert", "Fahrenheit 451");
+        assertThat(bookSuggestionTrie.suggest("DUNE", 10)).containsExactly("Dune", "Dune Messiah");
+        assertThat(bookSuggestionTrie.suggest("dune m", 10)).containsExactly("Dune Messiah");
+        assertThat(bookSuggestionTrie.suggest("x", 10)).isEmpty();
+    }
+
+    @Test
+    public void whenTopListIsFullExpectLimitedCompletions() {
+        bookSuggestionTrie.index(1L, "Alpha", "Author");
+        bookSuggestionTrie.index(2L, "Alpine", "Author");
+
+        assertThat(bookSuggestionTrie.suggest("a", 10)).hasSize(2).startsWith("Author");
+        assertThat(bookSuggestionTrie.suggest("a", 1)).containsExactly("Author");
+    }
+
+    @Test
+    public void whenBookIsRemovedExpectCompletionDropped() {
+        bookSuggestionTrie.index(1L, "Dune", "Frank Herbert");
+        bookSuggestionTrie.index(2L, "Dune Messiah", "Frank Herbert");
+        bookSuggestionTrie.remove(2L);
+
+        assertThat(bookSuggestionTrie.suggest("dune", 10)).containsExactly("Dune");
+        assertThat(bookSuggestionTrie.suggest("frank", 10)).containsExactly("Frank Herbert");
+
+        bookSuggestionTrie.remove(1L);
+        assertThat(bookSuggestionTrie.suggest("d", 10)).isEmpty();
+        assertThat(bookSuggestionTrie.getStats().get("nodes")).isEqualTo(1);
+    }
+}
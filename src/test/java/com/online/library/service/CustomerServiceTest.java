@@ -1,6 +1,10 @@
 package com.online.library.service;
 
+import com.online.library.exception.DuplicateRecordException;
 import com.online.library.exception.RecordNotFoundException;
+import com.online.library.exception.RecordInUseException;
+import com.online.library.exception.VersionConflictException;
+import com.online.library.utils.Constants;
 import com.online.library.model.Customer;
 import com.online.library.model.dto.CustomerDTO;
 import com.online.library.repository.CustomerRepository;
@@ -10,7 +14,9 @@ import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.InjectMocks;
+import org.mockito.Spy;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 
 import java.util.Collections;
@@ -18,7 +24,10 @@ import java.util.List;
 import java.util.Optional;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.mockito.MockitoAnnotations.initMocks;
@@ -36,6 +45,15 @@ public class CustomerServiceTest {
     @MockBean
     private CustomerRepository customerRepository;
 
+    @MockBean
+    private PrincipalCache principalCache;
+
+    @MockBean
+    private EmailRegistry emailRegistry;
+
+    @Spy
+    private OptimisticRetry optimisticRetry = new OptimisticRetry(3, 0);
+
     @Before
     public void before(){
         initMocks(this);
@@ -43,59 +61,116 @@ public class CustomerServiceTest {
 
     @Test
     public void whenGettingCustomerByIdExpectResult() {
-        when(customerRepository.findById(any())).thenReturn(Optional.of(customer));
-        CustomerDTO newCustomer = customerService.get(customer.getId());
-        assertThat(newCustomer.getEmail()).isEqualTo(customer.getEmail());
-        assertThat(newCustomer.getName()).isEqualTo(customer.getName());
-        assertThat(newCustomer.getId()).isEqualTo(customer.getId());
-        verify(customerRepository).findById(customer.getId());
+        when(customerRepository.findCustomerDTOById(any())).thenReturn(Optional.of(customerDTO));
+        CustomerDTO newCustomer = customerService.get(customerDTO.getId());
+        assertThat(newCustomer.getEmail()).isEqualTo(customerDTO.getEmail());
+        assertThat(newCustomer.getName()).isEqualTo(customerDTO.getName());
+        assertThat(newCustomer.getId()).isEqualTo(customerDTO.getId());
+        verify(customerRepository).findCustomerDTOById(customerDTO.getId());
     }
 
     @Test(expected = RecordNotFoundException.class)
     public void whenGettingCustomerByIdExpectNull() {
         Long id = 1L;
-        when(customerRepository.getById(id)).thenReturn(null);
+        when(customerRepository.findCustomerDTOById(id)).thenReturn(Optional.empty());
         customerService.get(id);
     }
 
     @Test
     public void whenGettingBooksExpectResult() {
-        when(customerRepository.findAll()).thenReturn(List.of(customer));
-        List<CustomerDTO> newBooks = customerService.getCustomers();
+        when(customerRepository.findCustomerDTOsAfter(any(), any())).thenReturn(List.of(customerDTO));
+        List<CustomerDTO> newBooks = customerService.getCustomers(0L, 10);
         assertThat(newBooks.size()).isEqualTo(1);
-        assertThat(newBooks.get(0).getId()).isEqualTo(customer.getId());
-        assertThat(newBooks.get(0).getName()).isEqualTo(customer.getName());
-        assertThat(newBooks.get(0).getEmail()).isEqualTo(customer.getEmail());
+        assertThat(newBooks.get(0).getId()).isEqualTo(customerDTO.getId());
+        assertThat(newBooks.get(0).getName()).isEqualTo(customerDTO.getName());
+        assertThat(newBooks.get(0).getEmail()).isEqualTo(customerDTO.getEmail());
     }
 
     @Test
     public void whenGettingBooksExpectEmpty() {
-        when(customerRepository.findAll()).thenReturn(Collections.emptyList());
-        List<CustomerDTO> newBooks = customerService.getCustomers();
+        when(customerRepository.findCustomerDTOsAfter(any(), any())).thenReturn(Collections.emptyList());
+        List<CustomerDTO> newBooks = customerService.getCustomers(0L, 10);
         assertThat(newBooks).isEmpty();
     }
 
     @Test
     public void whenUpdateBookExpectResult() {
-        when(customerRepository.existsById(any())).thenReturn(true);
-        when(customerRepository.getById(any())).thenReturn(customer);
-        when(customerRepository.save(any())).thenReturn(customer);
+        customer.setVersion(2L);
+        when(customerRepository.findCustomerDTOById(customerDTO.getId()))
+                .thenReturn(Optional.of(CustomerDTO.builder().id(customerDTO.getId()).email(customer.getEmail())
+                        .version(2L).build()));
+        when(customerRepository.updateCustomerAtVersion(customerDTO.getId(), customerDTO.getEmail(),
+                customerDTO.getName(), 2L)).thenReturn(1);
         CustomerDTO result = customerService.update(customerDTO);
         assertThat(result.getEmail()).isEqualTo(customerDTO.getEmail());
         assertThat(result.getName()).isEqualTo(customerDTO.getName());
         assertThat(result.getId()).isEqualTo(customerDTO.getId());
+        assertThat(result.getVersion()).isEqualTo(3L);
+        verify(principalCache).evict(customer.getEmail());
     }
 
     @Test
     public void whenUpdateBookExpectNull() {
-        when(customerRepository.existsById(any())).thenReturn(false);
+        when(customerRepository.findCustomerDTOById(any())).thenReturn(Optional.empty());
         CustomerDTO result = customerService.update(customerDTO);
         assertThat(result).isNull();
     }
 
+    @Test
+    public void whenUpdateCustomerWithStaleVersionExpectConflict() {
+        CustomerDTO stale = CustomerDTO.builder().id(customerDTO.getId()).email(customerDTO.getEmail())
+                .name(customerDTO.getName()).version(1L).build();
+        when(customerRepository.findCustomerDTOById(stale.getId()))
+                .thenReturn(Optional.of(CustomerDTO.builder().id(stale.getId()).version(2L).build()));
+        when(customerRepository.existsById(stale.getId())).thenReturn(true);
+        assertThatThrownBy(() -> customerService.update(stale))
+                .isInstanceOf(VersionConflictException.class)
+                .hasMessage(Constants.VERSION_CONFLICT_EXCEPTION);
+        verify(customerRepository, never()).updateCustomerAtVersion(any(), any(), any(), any());
+        verify(principalCache, never()).evict(any());
+    }
+
+    @Test
+    public void whenUpdateViolatesOtherConstraintExpectItNotReportedAsDuplicate() {
+        when(customerRepository.findCustomerDTOById(customerDTO.getId()))
+                .thenReturn(Optional.of(CustomerDTO.builder().id(customerDTO.getId()).version(2L).build()));
+        when(customerRepository.updateCustomerAtVersion(any(), any(), any(), any()))
+                .thenThrow(new DataIntegrityViolationException("NULL not allowed for column \"NAME\""));
+        assertThatThrownBy(() -> customerService.update(customerDTO))
+                .isInstanceOf(DataIntegrityViolationException.class);
+    }
+
+    @Test
+    public void whenUpdateViolatesEmailConstraintExpectDuplicate() {
+        when(customerRepository.findCustomerDTOById(customerDTO.getId()))
+                .thenReturn(Optional.of(CustomerDTO.builder().id(customerDTO.getId()).version(2L).build()));
+        when(customerRepository.updateCustomerAtVersion(any(), any(), any(), any()))
+                .thenThrow(new DataIntegrityViolationException("Unique index or primary key violation: "
+                        + "\"PUBLIC.UK_CUSTOMERS_EMAIL_INDEX_6 ON PUBLIC.CUSTOMERS(EMAIL)\""));
+        assertThatThrownBy(() -> customerService.update(customerDTO))
+                .isInstanceOf(DuplicateRecordException.class)
+                .hasMessage(Constants.DUPLICATE_EMAIL_EXCEPTION);
+    }
+
     @Test
     public void whenDeleteBookExpectResult() {
         customerService.delete(customer.getId());
         verify(customerRepository).deleteById(customer.getId());
     }
+
+    @Test
+    public void whenDeleteCustomerWithLoansExpectConflict() {
+        doThrow(new DataIntegrityViolationException("fk_loans_customer")).when(customerRepository).deleteById(customer.getId());
+        assertThatThrownBy(() -> customerService.delete(customer.getId()))
+                .isInstanceOf(RecordInUseException.class)
+                .hasMessage(Constants.RECORD_IN_USE_EXCEPTION);
+    }
+
+    @Test
+    public void whenDeleteCustomerExpectPrincipalEvicted() {
+        when(customerRepository.findById(customer.getId())).thenReturn(Optional.of(customer));
+        customerService.delete(customer.getId());
+        verify(principalCache).evict(customer.getEmail());
+        verify(customerRepository).deleteById(customer.getId());
+    }
 }
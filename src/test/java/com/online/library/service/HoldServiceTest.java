@@ -0,0 +1,158 @@
+package com.online.library.service;
+
+import com.online.library.exception.DuplicateRecordException;
+import com.online.library.exception.RecordNotFoundException;
+import com.online.library.model.Book;
+import com.online.library.model.Customer;
+import com.online.library.model.Hold;
+import com.online.library.model.HoldStatus;
+import com.online.library.model.Loan;
+import com.online.library.model.dto.BookDTO;
+import com.online.library.model.dto.HoldDTO;
+import com.online.library.repository.BookRepository;
+import com.online.library.repository.CustomerRepository;
+import com.online.library.repository.HoldRepository;
+import com.online.library.repository.LoanRepository;
+import com.online.library.utils.Constants;
+import com.online.library.utils.PopulatedValidBook;
+import com.online.library.utils.PopulatedValidCustomer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import java.time.Instant;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+import static org.mockito.MockitoAnnotations.openMocks;
+
+@RunWith(SpringJUnit4ClassRunner.class)
+public class HoldServiceTest {
+
+    private final Book book = new PopulatedValidBook();
+
+    private final Customer customer = new PopulatedValidCustomer();
+
+    @InjectMocks
+    private final HoldService holdService = new HoldService();
+
+    @MockBean
+    private HoldRepository holdRepository;
+
+    @MockBean
+    private BookRepository bookRepository;
+
+    @MockBean
+    private CustomerRepository customerRepository;
+
+    @MockBean
+    private LoanRepository loanRepository;
+
+    @MockBean
+    private InventoryEngine inventoryEngine;
+
+    private AutoCloseable mocks;
+
+    @Before
+    public void before(){
+        mocks = openMocks(this);
+    }
+
+    @After
+    public void after() throws Exception {
+        mocks.close();
+    }
+
+    private BookDTO bookWithCopies(int copies) {
+        return BookDTO.builder().id(book.getId()).title(book.getTitle()).author(book.getAuthor())
+                .numberOfCopies(copies).build();
+    }
+
+    private Hold hold(Long id) {
+        return Hold.builder().id(id).book(book).customer(customer).status(HoldStatus.WAITING).createdAt(Instant.now()).build();
+    }
+
+    @Test
+    public void whenPlacingHoldExpectQueuePosition() {
+        when(bookRepository.findBookDTOById(book.getId())).thenReturn(Optional.of(bookWithCopies(0)));
+        when(bookRepository.getById(book.getId())).thenReturn(book);
+        when(customerRepository.getById(customer.getId())).thenReturn(customer);
+        when(holdRepository.save(any())).thenReturn(hold(5L));
+        when(holdRepository.countByBookIdAndStatusAndIdLessThan(book.getId(), HoldStatus.WAITING, 5L)).thenReturn(2L);
+        HoldDTO result = holdService.placeHold(book.getId(), customer.getId());
+        assertThat(result.getStatus()).isEqualTo(HoldStatus.WAITING);
+        assertThat(result.getPosition()).isEqualTo(3L);
+    }
+
+    @Test(expected = DuplicateRecordException.class)
+    public void whenPlacingSecondHoldExpectException() {
+        when(bookRepository.findBookDTOById(book.getId())).thenReturn(Optional.of(bookWithCopies(0)));
+        when(holdRepository.existsByBookIdAndCustomerIdAndStatus(book.getId(), customer.getId(), HoldStatus.WAITING))
+                .thenReturn(true);
+        holdService.placeHold(book.getId(), customer.getId());
+    }
+
+    @Test
+    public void whenPlacingHoldOnAvailableBookExpectException() {
+        when(bookRepository.findBookDTOById(book.getId())).thenReturn(Optional.of(bookWithCopies(1)));
+        assertThatThrownBy(() -> holdService.placeHold(book.getId(), customer.getId()))
+                .isInstanceOf(DuplicateRecordException.class)
+                .hasMessage(Constants.HOLD_COPIES_AVAILABLE_EXCEPTION);
+        verify(holdRepository, never()).save(any());
+    }
+
+    @Test(expected = RecordNotFoundException.class)
+    public void whenGettingOtherCustomersHoldExpectException() {
+        when(holdRepository.findById(5L)).thenReturn(Optional.of(hold(5L)));
+        holdService.getHold(5L, 2L);
+    }
+
+    @Test
+    public void whenCopyReturnedExpectHeadOfQueueLoaned() {
+        when(holdRepository.findFirstByBookIdAndStatusOrderByIdAsc(book.getId(), HoldStatus.WAITING))
+                .thenReturn(Optional.of(hold(5L)), Optional.of(hold(6L)));
+        when(holdRepository.closeWaitingHold(eq(5L), eq(HoldStatus.FULFILLED), any())).thenReturn(0);
+        when(holdRepository.closeWaitingHold(eq(6L), eq(HoldStatus.FULFILLED), any())).thenReturn(1);
+        assertThat(holdService.assignReturnedCopy(book.getId())).isTrue();
+        ArgumentCaptor<Loan> loan = ArgumentCaptor.forClass(Loan.class);
+        verify(loanRepository).save(loan.capture());
+        assertThat(loan.getValue().getCustomer()).isSameAs(customer);
+    }
+
+    @Test
+    public void whenCopiesAddedExpectWaitingHoldsServedFirst() {
+        when(holdRepository.existsByBookIdAndStatus(book.getId(), HoldStatus.WAITING)).thenReturn(true, true, false);
+        when(bookRepository.takeBookCopy(book.getId())).thenReturn(1);
+        when(holdRepository.findFirstByBookIdAndStatusOrderByIdAsc(book.getId(), HoldStatus.WAITING))
+                .thenReturn(Optional.of(hold(5L)), Optional.of(hold(6L)));
+        when(holdRepository.closeWaitingHold(any(), eq(HoldStatus.FULFILLED), any())).thenReturn(1);
+        assertThat(holdService.assignAddedCopies(book.getId(), 3)).isEqualTo(2);
+        verify(bookRepository, times(2)).takeBookCopy(book.getId());
+        verify(loanRepository, times(2)).save(any());
+        verify(bookRepository, never()).putBackBookCopy(any());
+    }
+
+    @Test
+    public void whenCopiesAddedAndQueueEmptiesExpectCopyPutBack() {
+        when(holdRepository.existsByBookIdAndStatus(book.getId(), HoldStatus.WAITING)).thenReturn(true);
+        when(bookRepository.takeBookCopy(book.getId())).thenReturn(1);
+        assertThat(holdService.assignAddedCopies(book.getId(), 1)).isZero();
+        verify(bookRepository).putBackBookCopy(book.getId());
+        verify(loanRepository, never()).save(any());
+    }
+
+    @Test
+    public void whenNobodyWaitingExpectCopyNotAssigned() {
+        assertThat(holdService.assignReturnedCopy(book.getId())).isFalse();
+        verify(loanRepository, never()).save(any());
+    }
+}
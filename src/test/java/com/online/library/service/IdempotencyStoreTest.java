@@ -0,0 +1,97 @@
+package com.online.library.service;
+
+import com.online.library.exception.DuplicateRecordException;
+import com.online.library.exception.RecordNotFoundException;
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class IdempotencyStoreTest {
+
+    private final IdempotencyStore idempotencyStore = new IdempotencyStore(100, 60);
+
+    @Test
+    public void whenKeyReplayedExpectOriginalResult() {
+        AtomicInteger calls = new AtomicInteger();
+        IdempotencyStore.Outcome<Integer> first = idempotencyStore.execute(1L, "key", "loan:1", calls::incrementAndGet);
+        IdempotencyStore.Outcome<Integer> second = idempotencyStore.execute(1L, "key", "loan:1", calls::incrementAndGet);
+        assertThat(first.isReplayed()).isFalse();
+        assertThat(second.isReplayed()).isTrue();
+        assertThat(second.getResult()).isEqualTo(1);
+        assertThat(calls.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void whenSameKeyFromAnotherCustomerExpectNewExecution() {
+        AtomicInteger calls = new AtomicInteger();
+        idempotencyStore.execute(1L, "key", "loan:1", calls::incrementAndGet);
+        IdempotencyStore.Outcome<Integer> other = idempotencyStore.execute(2L, "key", "loan:1", calls::incrementAndGet);
+        assertThat(other.isReplayed()).isFalse();
+        assertThat(calls.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void whenKeyReusedForAnotherRequestExpectConflict() {
+        idempotencyStore.execute(1L, "key", "loan:1", () -> 1);
+        assertThatThrownBy(() -> idempotencyStore.execute(1L, "key", "return:1", () -> 2))
+                .isInstanceOf(DuplicateRecordException.class);
+        assertThat(idempotencyStore.getStats()).containsEntry("mismatches", 1L);
+    }
+
+    @Test
+    public void whenMutationFailedExpectRetryAllowed() {
+        assertThatThrownBy(() -> idempotencyStore.execute(1L, "key", "loan:1", () -> {
+            throw new RecordNotFoundException("missing");
+        })).isInstanceOf(RecordNotFoundException.class);
+        IdempotencyStore.Outcome<Integer> retry = idempotencyStore.execute(1L, "key", "loan:1", () -> 1);
+        assertThat(retry.isReplayed()).isFalse();
+        assertThat(retry.getResult()).isEqualTo(1);
+    }
+
+    @Test
+    public void whenMutationFailsWithErrorExpectWaitingRequestReleased() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<Object> first = CompletableFuture.supplyAsync(() ->
+                idempotencyStore.execute(1L, "key", "loan:1", () -> {
+                    started.countDown();
+                    awaitQuietly(release);
+                    throw new StackOverflowError();
+                }));
+        started.await();
+        AtomicReference<Throwable> waitingFailure = new AtomicReference<>();
+        Thread waiting = new Thread(() -> {
+            try {
+                idempotencyStore.execute(1L, "key", "loan:1", () -> 2);
+            } catch (Throwable e) {
+                waitingFailure.set(e);
+            }
+        });
+        waiting.start();
+        while (waiting.getState() != Thread.State.WAITING) {
+            Thread.sleep(1);
+        }
+        release.countDown();
+
+        assertThatThrownBy(() -> first.get(5, TimeUnit.SECONDS)).hasCauseInstanceOf(StackOverflowError.class);
+        waiting.join(5000);
+        assertThat(waiting.isAlive()).isFalse();
+        assertThat(waitingFailure.get()).isInstanceOf(StackOverflowError.class);
+        assertThat(idempotencyStore.execute(1L, "key", "loan:1", () -> 3).getResult()).isEqualTo(3);
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package com.online.library.service;
+
+import com.online.library.model.dto.BookDTO;
+import com.online.library.repository.BookRepository;
+import com.online.library.repository.InventoryFlushRepository;
+import com.online.library.utils.InventoryJournal;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.FileSystemUtils;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+import static org.mockito.MockitoAnnotations.openMocks;
+
+@RunWith(SpringJUnit4ClassRunner.class)
+public class InventoryEngineTest {
+
+    private static final Long BOOK_ID = 1L;
+
+    private final Path journalDirectory = Paths.get("target", "inventory-engine-test", UUID.randomUUID().toString());
+
+    @InjectMocks
+    private final InventoryEngine inventoryEngine = new InventoryEngine(true, journalDirectory.toString());
+
+    @MockBean
+    private BookRepository bookRepository;
+
+    @MockBean
+    private InventoryFlushRepository inventoryFlushRepository;
+
+    @MockBean
+    private BookCache bookCache;
+
+    @MockBean
+    private CatalogVersion catalogVersion;
+
+    @MockBean
+    private JdbcTemplate jdbcTemplate;
+
+    @MockBean
+    private TransactionTemplate transactionTemplate;
+
+    private AutoCloseable mocks;
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void before() {
+        mocks = openMocks(this);
+        doAnswer(invocation -> {
+            ((Consumer<TransactionStatus>) invocation.getArgument(0)).accept(null);
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any());
+        storedCopies(1);
+    }
+
+    @After
+    public void after() throws Exception {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        inventoryEngine.shutdown();
+        FileSystemUtils.deleteRecursively(journalDirectory);
+        mocks.close();
+    }
+
+    private void storedCopies(int copies) {
+        when(bookRepository.findBookDTOById(BOOK_ID)).thenReturn(Optional.of(BookDTO.builder().id(BOOK_ID)
+                .title("title").author("author").numberOfCopies(copies).build()));
+    }
+
+    @Test
+    public void whenTakingAndReleasingExpectCounterNeverNegative() {
+        inventoryEngine.recover();
+        assertThat(inventoryEngine.take(BOOK_ID)).isTrue();
+        assertThat(inventoryEngine.take(BOOK_ID)).isFalse();
+        assertThat(inventoryEngine.available(BOOK_ID)).isZero();
+        inventoryEngine.release(BOOK_ID);
+        assertThat(inventoryEngine.available(BOOK_ID)).isEqualTo(1);
+        assertThat(inventoryEngine.getStats()).containsEntry("taken", 1L).containsEntry("rejected", 1L);
+    }
+
+    @Test
+    public void whenTransactionRolledBackExpectCopyPutBack() {
+        inventoryEngine.recover();
+        TransactionSynchronizationManager.initSynchronization();
+        assertThat(inventoryEngine.take(BOOK_ID)).isTrue();
+        assertThat(inventoryEngine.available(BOOK_ID)).isZero();
+
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            synchronization.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK);
+        }
+        assertThat(inventoryEngine.available(BOOK_ID)).isEqualTo(1);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void whenFlushedExpectDeltaAppliedOnceAndNothingPending() {
+        inventoryEngine.recover();
+        inventoryEngine.take(BOOK_ID);
+        inventoryEngine.flush();
+
+        ArgumentCaptor<List<Object[]>> batch = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate).batchUpdate(anyString(), batch.capture());
+        assertThat(batch.getValue()).hasSize(1);
+        assertThat(batch.getValue().get(0)).containsExactly(-1, BOOK_ID);
+        verify(inventoryFlushRepository).save(any());
+        verify(bookCache).evict(BOOK_ID);
+
+        storedCopies(0);
+        inventoryEngine.invalidate(BOOK_ID);
+        assertThat(inventoryEngine.available(BOOK_ID)).isZero();
+    }
+
+    @Test
+    public void whenRecoveringExpectPreviousRunApplied() throws Exception {
+        InventoryJournal previousRun = new InventoryJournal(journalDirectory);
+        previousRun.sync(previousRun.append(BOOK_ID, -1));
+        previousRun.close();
+
+        inventoryEngine.recover();
+        verify(jdbcTemplate).batchUpdate(anyString(), anyList());
+        verify(inventoryFlushRepository).save(any());
+        assertThat(inventoryEngine.isEnabled()).isTrue();
+        assertThat(inventoryEngine.available(BOOK_ID)).isEqualTo(1);
+    }
+
+    @Test
+    public void whenSegmentAlreadyAppliedExpectItSkipped() throws Exception {
+        InventoryJournal previousRun = new InventoryJournal(journalDirectory);
+        previousRun.sync(previousRun.append(BOOK_ID, -1));
+        previousRun.close();
+        when(inventoryFlushRepository.existsById(any())).thenReturn(true);
+
+        inventoryEngine.recover();
+        verify(jdbcTemplate, never()).batchUpdate(anyString(), anyList());
+        verify(inventoryFlushRepository).deleteById(any());
+        verify(inventoryFlushRepository, never()).save(any());
+    }
+}
@@ -0,0 +1,43 @@
+package com.online.library.service;
+
+import com.online.library.exception.VersionConflictException;
+import org.junit.Test;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class OptimisticRetryTest {
+
+    private final OptimisticRetry optimisticRetry = new OptimisticRetry(3, 1);
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void whenConflictClearsExpectResultAfterRetry() {
+        AtomicInteger calls = new AtomicInteger();
+        String result = optimisticRetry.run("book", true, () -> {
+            if (calls.incrementAndGet() < 3) {
+                throw new VersionConflictException("conflict");
+            }
+            return "updated";
+        });
+        assertThat(result).isEqualTo("updated");
+        Map<String, Object> stats = (Map<String, Object>) optimisticRetry.getStats().get("book");
+        assertThat(stats).containsEntry("attempts", 3L).containsEntry("conflicts", 2L).containsEntry("failures", 0L);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void whenNotRetryableExpectConflictOnFirstAttempt() {
+        AtomicInteger calls = new AtomicInteger();
+        assertThatThrownBy(() -> optimisticRetry.run("customer", false, () -> {
+            calls.incrementAndGet();
+            throw new VersionConflictException("conflict");
+        })).isInstanceOf(VersionConflictException.class);
+        assertThat(calls.get()).isEqualTo(1);
+        Map<String, Object> stats = (Map<String, Object>) optimisticRetry.getStats().get("customer");
+        assertThat(stats).containsEntry("conflictRate", 1.0).containsEntry("failures", 1L);
+    }
+}
@@ -0,0 +1,117 @@
+package com.online.library.service;
+
+import com.online.library.model.Book;
+import com.online.library.model.Customer;
+import com.online.library.model.Loan;
+import com.online.library.repository.LoanRepository;
+import com.online.library.utils.PopulatedValidBook;
+import com.online.library.utils.PopulatedValidCustomer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+import static org.mockito.MockitoAnnotations.openMocks;
+
+@RunWith(SpringJUnit4ClassRunner.class)
+public class OverdueLoanScannerTest {
+
+    private final Book book = new PopulatedValidBook();
+
+    private final Customer customer = new PopulatedValidCustomer();
+
+    private final Loan loan = Loan.builder().id(7L).book(book).customer(customer)
+            .loanedAt(Instant.now().minusSeconds(120)).dueAt(Instant.now().minusSeconds(60)).build();
+
+    @InjectMocks
+    private final OverdueLoanScanner overdueLoanScanner = new OverdueLoanScanner(1, 3_600_000, 500, 1_209_600_000);
+
+    @MockBean
+    private LoanRepository loanRepository;
+
+    @MockBean
+    private ApplicationEventPublisher eventPublisher;
+
+    @MockBean
+    private TransactionTemplate transactionTemplate;
+
+    private AutoCloseable mocks;
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void before() {
+        mocks = openMocks(this);
+        when(transactionTemplate.execute(any()))
+                .thenAnswer(invocation -> ((TransactionCallback<Object>) invocation.getArgument(0)).doInTransaction(null));
+        when(loanRepository.findDueLoansAfter(any(), any(), any(), any()))
+                .thenReturn(List.of(loan))
+                .thenReturn(Collections.emptyList());
+        when(loanRepository.findByIdInAndOverdueNotifiedAt(any(), any())).thenReturn(List.of(loan));
+        overdueLoanScanner.start();
+    }
+
+    @After
+    public void after() throws Exception {
+        mocks.close();
+    }
+
+    @Test
+    public void whenLoanIsOverdueExpectOneEvent() throws Exception {
+        when(loanRepository.markOverdue(any(), any())).thenReturn(1);
+        overdueLoanScanner.tick();
+        Thread.sleep(5);
+        overdueLoanScanner.tick();
+
+        ArgumentCaptor<LoanOverdueEvent> event = ArgumentCaptor.forClass(LoanOverdueEvent.class);
+        verify(eventPublisher, times(1)).publishEvent(event.capture());
+        assertThat(event.getValue().getLoanId()).isEqualTo(loan.getId());
+        assertThat(event.getValue().getBookId()).isEqualTo(book.getId());
+        assertThat(event.getValue().getCustomerId()).isEqualTo(customer.getId());
+        assertThat(overdueLoanScanner.getStats()).containsEntry("fired", 1L);
+    }
+
+    @Test
+    public void whenMarkingFailsExpectLoanRetriedOnNextTick() throws Exception {
+        when(loanRepository.markOverdue(any(), any()))
+                .thenThrow(new QueryTimeoutException("timeout"))
+                .thenReturn(1);
+        overdueLoanScanner.tick();
+        verify(eventPublisher, never()).publishEvent(any());
+        assertThat(overdueLoanScanner.getStats()).containsEntry("scheduled", 1);
+
+        Thread.sleep(5);
+        overdueLoanScanner.tick();
+        verify(eventPublisher, times(1)).publishEvent(any(LoanOverdueEvent.class));
+        assertThat(overdueLoanScanner.getStats()).containsEntry("scheduled", 0);
+    }
+
+    @Test
+    public void whenPublishingFailsExpectLoanRetriedOnNextTick() throws Exception {
+        when(loanRepository.markOverdue(any(), any())).thenReturn(1);
+        doThrow(new IllegalStateException("listener failed"))
+                .doNothing()
+                .when(eventPublisher).publishEvent(any(LoanOverdueEvent.class));
+        overdueLoanScanner.tick();
+        assertThat(overdueLoanScanner.getStats()).containsEntry("scheduled", 1).containsEntry("fired", 0L);
+
+        Thread.sleep(5);
+        overdueLoanScanner.tick();
+        verify(eventPublisher, times(2)).publishEvent(any(LoanOverdueEvent.class));
+        assertThat(overdueLoanScanner.getStats()).containsEntry("scheduled", 0).containsEntry("fired", 1L);
+    }
+}
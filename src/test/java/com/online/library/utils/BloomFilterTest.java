@@ -0,0 +1,35 @@
+package com.online.library.utils;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class BloomFilterTest {
+
+    @Test
+    public void whenValueWasAddedExpectMightContain() {
+        BloomFilter filter = new BloomFilter(1000, 0.01);
+        for (int i = 0; i < 1000; i++) {
+            filter.put("token-" + i);
+        }
+        for (int i = 0; i < 1000; i++) {
+            assertThat(filter.mightContain("token-" + i)).isTrue();
+        }
+        assertThat(filter.getInsertions()).isEqualTo(1000);
+    }
+
+    @Test
+    public void whenValueWasNotAddedExpectFewFalsePositives() {
+        BloomFilter filter = new BloomFilter(1000, 0.01);
+        for (int i = 0; i < 1000; i++) {
+            filter.put("token-" + i);
+        }
+        int falsePositives = 0;
+        for (int i = 0; i < 10000; i++) {
+            if (filter.mightContain("other-" + i)) {
+                falsePositives++;
+            }
+        }
+        assertThat(falsePositives).isLessThan(300);
+    }
+}
@@ -0,0 +1,33 @@
+package com.online.library.utils;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class CalibratedBCryptPasswordEncoderTest {
+
+    @Test
+    public void whenStoredStrengthDiffersExpectUpgrade() {
+        String weaker = new CalibratedBCryptPasswordEncoder(4).encode("password");
+        String stronger = new CalibratedBCryptPasswordEncoder(6).encode("password");
+        CalibratedBCryptPasswordEncoder encoder = new CalibratedBCryptPasswordEncoder(5);
+
+        assertThat(encoder.upgradeEncoding(weaker)).isTrue();
+        assertThat(encoder.upgradeEncoding(stronger)).isTrue();
+        assertThat(encoder.upgradeEncoding(encoder.encode("password"))).isFalse();
+    }
+
+    @Test
+    public void whenParsingStrengthExpectCostFactor() {
+        String encoded = new CalibratedBCryptPasswordEncoder(4).encode("password");
+        assertThat(CalibratedBCryptPasswordEncoder.strengthOf(encoded)).isEqualTo(4);
+        assertThat(CalibratedBCryptPasswordEncoder.strengthOf("not-a-hash")).isNull();
+    }
+
+    @Test
+    public void whenCalibratingExpectStrengthInRange() {
+        int strength = CalibratedBCryptPasswordEncoder.calibrate(1);
+        assertThat(strength).isBetween(CalibratedBCryptPasswordEncoder.MIN_STRENGTH,
+                CalibratedBCryptPasswordEncoder.MAX_STRENGTH);
+    }
+}
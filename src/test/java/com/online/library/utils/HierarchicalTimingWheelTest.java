@@ -0,0 +1,55 @@
+package com.online.library.utils;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class HierarchicalTimingWheelTest {
+
+    @Test
+    public void whenAdvancingExpectEntriesInDueOrderAndNeverEarly() {
+        HierarchicalTimingWheel wheel = new HierarchicalTimingWheel(10, 4, 3, 1_000);
+        wheel.add(1L, 1_015);
+        wheel.add(2L, 1_395);
+        wheel.add(3L, 1_100);
+        List<Long> expired = new ArrayList<>();
+
+        wheel.advance(1_015, expired::add);
+        assertThat(expired).isEmpty();
+        wheel.advance(1_020, expired::add);
+        assertThat(expired).containsExactly(1L);
+        wheel.advance(1_110, expired::add);
+        assertThat(expired).containsExactly(1L, 3L);
+        wheel.advance(1_395, expired::add);
+        assertThat(expired).containsExactly(1L, 3L);
+        wheel.advance(1_400, expired::add);
+        assertThat(expired).containsExactly(1L, 3L, 2L);
+        assertThat(wheel.size()).isZero();
+    }
+
+    @Test
+    public void whenEntryBeyondTopLevelExpectItCascadesDown() {
+        HierarchicalTimingWheel wheel = new HierarchicalTimingWheel(10, 4, 2, 0);
+        wheel.add(1L, 1_000);
+        List<Long> expired = new ArrayList<>();
+
+        wheel.advance(1_000, expired::add);
+        assertThat(expired).isEmpty();
+        assertThat(wheel.size()).isEqualTo(1);
+        wheel.advance(1_010, expired::add);
+        assertThat(expired).containsExactly(1L);
+    }
+
+    @Test
+    public void whenEntryAlreadyExpiredExpectItOnNextAdvance() {
+        HierarchicalTimingWheel wheel = new HierarchicalTimingWheel(10, 4, 2, 1_000);
+        wheel.add(1L, 500);
+        List<Long> expired = new ArrayList<>();
+
+        wheel.advance(1_000, expired::add);
+        assertThat(expired).containsExactly(1L);
+    }
+}
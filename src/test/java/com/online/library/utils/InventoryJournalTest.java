@@ -0,0 +1,70 @@
+package com.online.library.utils;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class InventoryJournalTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void whenSegmentRotatedExpectCoalescedDeltas() throws Exception {
+        InventoryJournal journal = new InventoryJournal(folder.getRoot().toPath());
+        journal.sync(journal.append(1L, -1));
+        journal.sync(journal.append(1L, -1));
+        journal.sync(journal.append(2L, 1));
+        journal.sync(journal.append(3L, -1));
+        journal.sync(journal.append(3L, 1));
+        journal.rotate();
+
+        List<Long> segments = journal.closedSegments();
+        assertThat(segments).hasSize(1);
+        Map<Long, Integer> deltas = journal.read(segments.get(0));
+        assertThat(deltas).containsEntry(1L, -2).containsEntry(2L, 1).doesNotContainKey(3L);
+
+        journal.delete(segments.get(0));
+        assertThat(journal.closedSegments()).isEmpty();
+        journal.close();
+    }
+
+    @Test
+    public void whenReopenedExpectPreviousSegmentClosed() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        InventoryJournal journal = new InventoryJournal(directory);
+        journal.sync(journal.append(7L, -1));
+        journal.close();
+
+        InventoryJournal reopened = new InventoryJournal(directory);
+        List<Long> segments = reopened.closedSegments();
+        assertThat(segments).hasSize(1);
+        assertThat(reopened.read(segments.get(0))).containsEntry(7L, -1);
+        reopened.close();
+    }
+
+    @Test
+    public void whenRecordTornExpectItSkipped() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        InventoryJournal journal = new InventoryJournal(directory);
+        journal.sync(journal.append(5L, -1));
+        journal.close();
+        try (Stream<Path> files = Files.list(directory)) {
+            Path segment = files.findFirst().orElseThrow();
+            Files.write(segment, new byte[]{0, 0, 0}, StandardOpenOption.APPEND);
+        }
+
+        InventoryJournal reopened = new InventoryJournal(directory);
+        assertThat(reopened.read(reopened.closedSegments().get(0))).containsEntry(5L, -1).hasSize(1);
+        reopened.close();
+    }
+}
@@ -0,0 +1,46 @@
+package com.online.library.utils;
+
+import io.jsonwebtoken.Claims;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class JWTUtilsTest {
+
+    private final JWTUtils jwtUtils = new JWTUtils();
+
+    @Before
+    public void before() {
+        ReflectionTestUtils.setField(jwtUtils, "jwtSecret", "test-secret");
+        ReflectionTestUtils.setField(jwtUtils, "jwtExpiration", 60000);
+        ReflectionTestUtils.setField(jwtUtils, "jwtClaimsCacheSize", 100L);
+        jwtUtils.init();
+    }
+
+    @Test
+    public void whenVerifyingValidTokenExpectClaims() {
+        String token = jwtUtils.generateTokenFromUsername("test@gmail.com");
+        Claims claims = jwtUtils.getVerifiedClaims(token);
+        assertThat(claims).isNotNull();
+        assertThat(claims.getSubject()).isEqualTo("test@gmail.com");
+        assertThat(jwtUtils.getUserNameFromJwtToken(token)).isEqualTo("test@gmail.com");
+    }
+
+    @Test
+    public void whenVerifyingSameTokenTwiceExpectCacheHit() {
+        String token = jwtUtils.generateTokenFromUsername("test@gmail.com");
+        Claims first = jwtUtils.getVerifiedClaims(token);
+        Claims second = jwtUtils.getVerifiedClaims(token);
+        assertThat(second).isSameAs(first);
+        assertThat(jwtUtils.getStats().get("hits")).isEqualTo(1L);
+    }
+
+    @Test
+    public void whenVerifyingTamperedTokenExpectNull() {
+        String token = jwtUtils.generateTokenFromUsername("test@gmail.com");
+        assertThat(jwtUtils.getVerifiedClaims(token + "x")).isNull();
+        assertThat(jwtUtils.validateJwtToken(token + "x")).isFalse();
+    }
+}
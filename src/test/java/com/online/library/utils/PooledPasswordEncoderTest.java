@@ -0,0 +1,77 @@
+package com.online.library.utils;
+
+import com.online.library.exception.ServiceUnavailableException;
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class PooledPasswordEncoderTest {
+
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    private final ExecutorService callers = Executors.newCachedThreadPool();
+
+    @After
+    public void after() {
+        release.countDown();
+        callers.shutdownNow();
+    }
+
+    @Test
+    public void whenEncodingExpectDelegateResult() {
+        PooledPasswordEncoder encoder = new PooledPasswordEncoder(new PlainEncoder(null), 1, 1, 1000);
+        assertThat(encoder.encode("secret")).isEqualTo("{plain}secret");
+        assertThat(encoder.matches("secret", "{plain}secret")).isTrue();
+        assertThat(encoder.getStats().get("hashCount")).isEqualTo(2L);
+        encoder.destroy();
+    }
+
+    @Test
+    public void whenQueueIsFullExpectServiceUnavailable() throws Exception {
+        PooledPasswordEncoder encoder = new PooledPasswordEncoder(new PlainEncoder(release), 1, 1, 5000);
+        callers.submit(() -> encoder.encode("first"));
+        callers.submit(() -> encoder.encode("second"));
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(5);
+        while ((Integer) encoder.getStats().get("queueDepth") < 1 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+
+        assertThatThrownBy(() -> encoder.encode("third")).isInstanceOf(ServiceUnavailableException.class);
+        assertThat(encoder.getStats().get("rejected")).isEqualTo(1L);
+        encoder.destroy();
+    }
+
+    private static class PlainEncoder implements PasswordEncoder {
+
+        private final CountDownLatch release;
+
+        private PlainEncoder(CountDownLatch release) {
+            this.release = release;
+        }
+
+        @Override
+        public String encode(CharSequence rawPassword) {
+            if (release != null) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return "{plain}" + rawPassword;
+        }
+
+        @Override
+        public boolean matches(CharSequence rawPassword, String encodedPassword) {
+            return encodedPassword.equals("{plain}" + rawPassword);
+        }
+    }
+}